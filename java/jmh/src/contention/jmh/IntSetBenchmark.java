@@ -0,0 +1,138 @@
+package contention.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import contention.abstractions.BulkLoadAlg;
+import contention.abstractions.CompositionalIntSet;
+import contention.abstractions.MaintenanceAlg;
+import contention.benchmark.KeyGenerator;
+import contention.benchmark.KeySampler;
+import contention.benchmark.XorShiftRandom;
+
+/**
+ * The JMH counterpart of the integer set benchmark of Test: each thread
+ * runs addInt, removeInt and containsInt on keys drawn by the
+ * KeyGenerator of the benchmark loops, in the proportions of the update
+ * ratio. The skew of the zipfian, scrambled and latest distributions is
+ * the default theta of Parameters. The set is filled with half of the range before each trial.
+ * The number of threads is set with the -t option of JMH.
+ *
+ * The sequential sets, LinkedListIntSet and SkiplistIntSet, are left out
+ * of the default implementations, as they only run on a single thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(3)
+public class IntSetBenchmark {
+
+	/** The class name of the benchmarked set */
+	@Param({ "soft3410.CoarseGrainedLinkedListIntSet",
+			"soft3410.ReadWriteLinkedListIntSet",
+			"soft3410.StampedLockLinkedListIntSet",
+			"soft3410.HandOverHandLinkedListIntSet",
+			"soft3410.LockFreeLinkedListIntSet",
+			"soft3410.CoarseGrainedSkiplistIntSet",
+			"soft3410.FasterSkiplistIntSet",
+			"soft3410.NoHotSpotSkiplistIntSet",
+			"soft3410.SkipTreeIntSet",
+			"soft3410.CoarseGrainedChainingHashTableIntSet",
+			"soft3410.BucketLockingChainingHashTableIntSet" })
+	public String impl;
+
+	/** The keys lie in [0, range) */
+	@Param({ "2048" })
+	public int range;
+
+	/** The distribution of the keys, one of KeyGenerator.NAMES */
+	@Param({ "uniform" })
+	public String distribution;
+
+	/** The percentage of updates, half additions and half removals */
+	@Param({ "0", "10", "50" })
+	public int updates;
+
+	CompositionalIntSet set;
+	/** The latest key added, shared by the threads of a trial */
+	final AtomicInteger latestKey = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		set = (CompositionalIntSet) Class.forName(impl).getConstructor()
+				.newInstance();
+		latestKey.set(0);
+		Random random = new Random();
+		int[] keys = new int[range / 2];
+		KeySampler.sample(random, 0, range, keys, 0, keys.length);
+		if (set instanceof BulkLoadAlg) {
+			((BulkLoadAlg) set).bulkLoad(keys);
+		} else {
+			KeySampler.shuffle(random, keys, 0, keys.length);
+			for (int key : keys)
+				set.addInt(key);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (set instanceof MaintenanceAlg)
+			((MaintenanceAlg) set).stopMaintenance();
+	}
+
+	/**
+	 * The random state of a benchmark thread.
+	 */
+	@State(Scope.Thread)
+	public static class ThreadState {
+		Random random;
+		KeyGenerator keys;
+		int updateBound;
+
+		@Setup(Level.Trial)
+		public void setUp(IntSetBenchmark benchmark) {
+			random = new XorShiftRandom();
+			keys = KeyGenerator.newInstance(benchmark.distribution, random,
+					benchmark.range, benchmark.latestKey);
+			updateBound = 10 * benchmark.updates;
+		}
+	}
+
+	/**
+	 * Runs one operation, an update with the probability of the update
+	 * ratio and a lookup otherwise.
+	 * @return the result of the operation, consumed by JMH
+	 */
+	@Benchmark
+	public boolean operation(ThreadState state) {
+		int key = state.keys.nextKey();
+		int coin = state.random.nextInt(1000);
+		if (coin < state.updateBound) {
+			if (2 * coin < state.updateBound) {
+				if (!set.addInt(key))
+					return false;
+				state.keys.added(key);
+				return true;
+			}
+			return set.removeInt(key);
+		}
+		return set.containsInt(key);
+	}
+}
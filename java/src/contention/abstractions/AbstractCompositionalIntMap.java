@@ -0,0 +1,176 @@
+package contention.abstractions;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The base of the int-to-int maps, which store their keys and values as
+ * ints and only box them at the Map interface.
+ *
+ * The int methods of CompositionalIntIntMap return NO_VALUE when the key
+ * has no mapping, so that value cannot be stored.
+ */
+public abstract class AbstractCompositionalIntMap extends AbstractMap<Integer, Integer>
+        implements CompositionalMap<Integer, Integer>, CompositionalIntIntMap {
+
+    /**
+     * @return the value of the key, or NO_VALUE
+     */
+    public abstract int getInt(int key);
+
+    /**
+     * @return the previous value of the key, or NO_VALUE
+     */
+    public abstract int putInt(int key, int value);
+
+    /**
+     * @return the current value of the key, or NO_VALUE if it was added
+     */
+    public abstract int putIfAbsentInt(int key, int value);
+
+    /**
+     * @return the removed value of the key, or NO_VALUE
+     */
+    public abstract int removeInt(int key);
+
+    /**
+     * Returns the mappings, each packed into a long with the key in the
+     * high bits, without excluding the concurrent updates.
+     */
+    protected abstract long[] mappings();
+
+    protected static void checkValue(int value) {
+        if (value == NO_VALUE) {
+            throw new IllegalArgumentException("Cannot map to " + NO_VALUE);
+        }
+    }
+
+    private static Integer box(int value) {
+        return (value == NO_VALUE) ? null : value;
+    }
+
+    @Override
+    public Integer get(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        return box(getInt((Integer) key));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof Integer) && getInt((Integer) key) != NO_VALUE;
+    }
+
+    @Override
+    public Integer put(Integer key, Integer value) {
+        return box(putInt(key, value));
+    }
+
+    @Override
+    public Integer putIfAbsent(Integer key, Integer value) {
+        return box(putIfAbsentInt(key, value));
+    }
+
+    @Override
+    public Integer remove(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        return box(removeInt((Integer) key));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Returns a view of the keys whose lookups and removals go to the map,
+     * and whose iterator goes over a copy of the mappings.
+     */
+    @Override
+    public Set<Integer> keySet() {
+        return new AbstractSet<Integer>() {
+            public Iterator<Integer> iterator() {
+                final Iterator<Map.Entry<Integer, Integer>> entries = entrySet().iterator();
+                return new Iterator<Integer>() {
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    public Integer next() {
+                        return entries.next().getKey();
+                    }
+
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            public int size() {
+                return AbstractCompositionalIntMap.this.size();
+            }
+
+            public boolean contains(Object key) {
+                return containsKey(key);
+            }
+
+            public boolean remove(Object key) {
+                return (key instanceof Integer) && removeInt((Integer) key) != NO_VALUE;
+            }
+        };
+    }
+
+    /**
+     * Returns the mappings at the time of the call, copied. Removing an
+     * entry through the iterator removes its key from the map.
+     */
+    @Override
+    public Set<Map.Entry<Integer, Integer>> entrySet() {
+        final long[] mappings = mappings();
+        return new AbstractSet<Map.Entry<Integer, Integer>>() {
+            public Iterator<Map.Entry<Integer, Integer>> iterator() {
+                return new Iterator<Map.Entry<Integer, Integer>>() {
+                    private int position = 0;
+
+                    public boolean hasNext() {
+                        return position < mappings.length;
+                    }
+
+                    public Map.Entry<Integer, Integer> next() {
+                        if (position == mappings.length) {
+                            throw new NoSuchElementException();
+                        }
+                        long mapping = mappings[position++];
+                        return new AbstractMap.SimpleImmutableEntry<Integer, Integer>(
+                                (int) (mapping >> 32), (int) mapping);
+                    }
+
+                    public void remove() {
+                        if (position == 0) {
+                            throw new IllegalStateException();
+                        }
+                        removeInt((int) (mappings[position - 1] >> 32));
+                    }
+                };
+            }
+
+            public int size() {
+                return mappings.length;
+            }
+        };
+    }
+
+    /**
+     * Packs a mapping into a long, the key in the high bits.
+     */
+    protected static long pack(int key, int value) {
+        return ((long) key << 32) | (value & 0xffffffffL);
+    }
+}
@@ -1,11 +1,21 @@
 package contention.abstractions;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 public abstract class AbstractCompositionalIntSet implements CompositionalIntSet, CompositionalMap<Integer, Integer> {
 
+    /**
+     * If set, size() is linearizable on the structures that count their
+     * elements with striped counters, at the price of excluding the
+     * updates while it runs. Otherwise their size() is only exact in the
+     * absence of concurrent updates.
+     */
+    public static volatile boolean linearizableSize = false;
+
     @Override
     public boolean containsKey(Object key) {
         throw new RuntimeException("unimplemented method");
@@ -92,21 +102,66 @@ public abstract class AbstractCompositionalIntSet implements CompositionalIntSet
         // TODO Auto-generated method stub
     }
 
+    /**
+     * Adds the ints of the collection one at a time, in increasing order.
+     * The structures override it to apply the whole batch in a single
+     * traversal per lock acquisition.
+     *
+     * @return true if the set changed
+     */
     @Override
     public boolean addAll(Collection<Integer> c) {
-        throw new RuntimeException("unimplemented method");
-        // TODO Auto-generated method stub
+        boolean changed = false;
+        for (int value : sortedKeys(c)) {
+            changed |= addInt(value);
+        }
+        return changed;
     }
 
+    /**
+     * Removes the ints of the collection one at a time, in increasing order.
+     *
+     * @return true if the set changed
+     */
     @Override
     public boolean removeAll(Collection<Integer> c) {
-        throw new RuntimeException("unimplemented method");
-        // TODO Auto-generated method stub
+        boolean changed = false;
+        for (int value : sortedKeys(c)) {
+            changed |= removeInt(value);
+        }
+        return changed;
     }
 
+    /**
+     * Returns the distinct ints of a batch in increasing order.
+     */
+    protected static int[] sortedKeys(Collection<Integer> c) {
+        int[] keys = new int[c.size()];
+        int count = 0;
+        for (Integer key : c) {
+            keys[count++] = key;
+        }
+        Arrays.sort(keys, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || keys[unique - 1] != keys[i]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return unique == keys.length ? keys : Arrays.copyOf(keys, unique);
+    }
+
+    /**
+     * Adds random ints of [0, range) until size of them were added. The
+     * benchmark fills the sets in parallel instead, see Test.fill().
+     */
     @Override
     public void fill(int range, long size) {
-        throw new RuntimeException("unimplemented method");
-        // TODO Auto-generated method stub
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (long i = size; i > 0;) {
+            if (addInt(random.nextInt(range))) {
+                i--;
+            }
+        }
     }
 }
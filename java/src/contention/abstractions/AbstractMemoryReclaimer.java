@@ -0,0 +1,154 @@
+package contention.abstractions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-thread bookkeeping shared by the memory reclaimers: the registry of
+ * thread records, the pools of reclaimed nodes and the statistics.
+ */
+public abstract class AbstractMemoryReclaimer<N, R extends AbstractMemoryReclaimer.ThreadRecord>
+		implements MemoryReclaimer<N> {
+
+	/** The maximum number of nodes kept in the pool of a thread */
+	static final int MAX_POOL = 1 << 16;
+
+	/** The records of the registered threads, copied on registration */
+	protected volatile ThreadRecord[] records = new ThreadRecord[0];
+
+	/** The nodes retired but not reclaimed yet, updated in batches */
+	private final AtomicLong unreclaimed = new AtomicLong(0);
+	private final AtomicLong peakUnreclaimed = new AtomicLong(0);
+
+	private final ThreadLocal<R> local = new ThreadLocal<R>() {
+		@Override
+		protected R initialValue() {
+			R record = newRecord();
+			register(record);
+			return record;
+		}
+	};
+
+	/**
+	 * The per-thread state. Only its thread writes the pool and the
+	 * counters, which are read by the main thread once the benchmark
+	 * threads are joined.
+	 */
+	protected static class ThreadRecord {
+		Object[] pool = new Object[16];
+		int poolSize = 0;
+		/** The retirements not accounted in unreclaimed yet */
+		long pending = 0;
+
+		long retired = 0;
+		long reclaimed = 0;
+		long recycled = 0;
+	}
+
+	protected abstract R newRecord();
+
+	private synchronized void register(R record) {
+		ThreadRecord[] old = records;
+		ThreadRecord[] updated = new ThreadRecord[old.length + 1];
+		System.arraycopy(old, 0, updated, 0, old.length);
+		updated[old.length] = record;
+		records = updated;
+	}
+
+	protected final R record() {
+		return local.get();
+	}
+
+	/**
+	 * Counts a retirement of the record's thread.
+	 */
+	protected final void retired(R record) {
+		record.retired++;
+		record.pending++;
+	}
+
+	/**
+	 * Moves a node no other thread can access to the record's pool.
+	 */
+	protected final void reclaimed(R record, Object node) {
+		if (record.poolSize < MAX_POOL) {
+			if (record.poolSize == record.pool.length) {
+				Object[] grown = new Object[2 * record.pool.length];
+				System.arraycopy(record.pool, 0, grown, 0, record.poolSize);
+				record.pool = grown;
+			}
+			record.pool[record.poolSize++] = node;
+		}
+		record.reclaimed++;
+	}
+
+	/**
+	 * Publishes the retirements and reclamations of the record since its
+	 * last call, and updates the peak of unreclaimed nodes.
+	 */
+	protected final void account(R record, long reclaimedNodes) {
+		long current = unreclaimed.addAndGet(record.pending - reclaimedNodes);
+		record.pending = 0;
+		long peak = peakUnreclaimed.get();
+		while (current > peak && !peakUnreclaimed.compareAndSet(peak, current))
+			peak = peakUnreclaimed.get();
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public N allocate() {
+		R record = local.get();
+		if (record.poolSize == 0)
+			return null;
+		N node = (N) record.pool[--record.poolSize];
+		record.pool[record.poolSize] = null;
+		record.recycled++;
+		return node;
+	}
+
+	@Override
+	public long getRetired() {
+		long sum = 0;
+		for (ThreadRecord record : records)
+			sum += record.retired;
+		return sum;
+	}
+
+	@Override
+	public long getReclaimed() {
+		long sum = 0;
+		for (ThreadRecord record : records)
+			sum += record.reclaimed;
+		return sum;
+	}
+
+	@Override
+	public long getRecycled() {
+		long sum = 0;
+		for (ThreadRecord record : records)
+			sum += record.recycled;
+		return sum;
+	}
+
+	@Override
+	public long getPooled() {
+		long sum = 0;
+		for (ThreadRecord record : records)
+			sum += record.poolSize;
+		return sum;
+	}
+
+	@Override
+	public long getPeakUnreclaimed() {
+		return peakUnreclaimed.get();
+	}
+
+	@Override
+	public void resetStats() {
+		for (ThreadRecord record : records) {
+			record.retired = 0;
+			record.reclaimed = 0;
+			record.recycled = 0;
+		}
+		peakUnreclaimed.set(unreclaimed.get());
+	}
+}
@@ -0,0 +1,16 @@
+package contention.abstractions;
+
+/*
+ * Interface of the sets that can be built bottom-up from sorted keys
+ *
+ */
+public interface BulkLoadAlg {
+
+	/**
+	 * Replaces the content of the set with the given keys, distinct and
+	 * in ascending order, linking them in a single pass rather than
+	 * searching for each of them. Must not run concurrently with other
+	 * operations on the set.
+	 */
+	public void bulkLoad(int[] keys);
+}
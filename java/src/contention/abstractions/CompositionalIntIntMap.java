@@ -0,0 +1,22 @@
+package contention.abstractions;
+
+/*
+ * Compositional int-to-int map interface, whose methods take and return
+ * primitive keys and values so that the benchmark does not box them.
+ * The methods return NO_VALUE when the key has no mapping, so that value
+ * cannot be stored.
+ *
+ */
+public interface CompositionalIntIntMap {
+
+	public static final int NO_VALUE = Integer.MIN_VALUE;
+
+	public int getInt(int key);
+	public int putInt(int key, int value);
+	public int putIfAbsentInt(int key, int value);
+	public int removeInt(int key);
+
+	public int size();
+
+	public void clear();
+}
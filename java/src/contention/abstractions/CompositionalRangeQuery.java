@@ -0,0 +1,28 @@
+package contention.abstractions;
+
+/*
+ * Compositional range query interface, implemented by the sorted
+ * structures. Concurrent implementations return results consistent with
+ * a single point in time.
+ *
+ */
+public interface CompositionalRangeQuery {
+
+	/**
+	 * Returns the number of keys in [lo, hi)
+	 */
+	public int rangeCount(int lo, int hi);
+
+	/**
+	 * Returns the keys in [lo, hi), in ascending order
+	 */
+	public int[] rangeScan(int lo, int hi);
+
+	/**
+	 * Returns the key of the given rank, the smallest key having rank 0
+	 * 
+	 * @throws java.util.NoSuchElementException
+	 *             if the rank is not lower than the size
+	 */
+	public int select(int rank);
+}
@@ -0,0 +1,124 @@
+package contention.abstractions;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Epoch-based memory reclamation. Each thread announces the global epoch
+ * when it enters an operation and keeps the nodes it retires in a limbo
+ * list per epoch. The global epoch advances once every active thread has
+ * announced it, at which point the nodes retired two epochs earlier can no
+ * longer be referenced and move to the pool of the retiring thread.
+ * 
+ * A single stalled thread prevents the epoch from advancing, so the
+ * unreclaimed nodes are not bounded.
+ * 
+ * Based on K. Fraser. Practical lock-freedom. PhD thesis, University of
+ * Cambridge, 2004.
+ */
+public class EpochReclaimer<N> extends
+		AbstractMemoryReclaimer<N, EpochReclaimer.EpochRecord> {
+
+	/** The number of retirements between two attempts to advance the epoch */
+	static final int ADVANCE_THRESHOLD = 64;
+
+	private final AtomicLong globalEpoch = new AtomicLong(0);
+
+	static final class EpochRecord extends ThreadRecord {
+		volatile long epoch = 0;
+		volatile boolean active = false;
+		/** The limbo lists, one per epoch modulo 3 */
+		final Object[][] limbo = new Object[3][16];
+		final int[] limboSize = new int[3];
+		final long[] limboEpoch = new long[3];
+	}
+
+	@Override
+	protected EpochRecord newRecord() {
+		return new EpochRecord();
+	}
+
+	@Override
+	public void enter() {
+		EpochRecord record = record();
+		record.active = true;
+		long epoch = globalEpoch.get();
+		if (record.epoch != epoch) {
+			record.epoch = epoch;
+			long reclaimedNodes = 0;
+			for (int i = 0; i < 3; i++) {
+				if (record.limboEpoch[i] <= epoch - 2)
+					reclaimedNodes += reclaim(record, i);
+			}
+			account(record, reclaimedNodes);
+		}
+	}
+
+	@Override
+	public void exit() {
+		record().active = false;
+	}
+
+	@Override
+	public void protect(int slot, N node) {
+		// entering the epoch protects every node read until exit()
+	}
+
+	@Override
+	public void retire(N node) {
+		EpochRecord record = record();
+		// stamp the node with the current epoch rather than the announced
+		// one: a thread that entered before the node was unlinked announced
+		// at most this epoch and blocks the epoch from going two past it
+		long epoch = globalEpoch.get();
+		int i = (int) (epoch % 3);
+		if (record.limboEpoch[i] != epoch) {
+			// the list holds nodes of epoch - 3 or older
+			account(record, reclaim(record, i));
+			record.limboEpoch[i] = epoch;
+		}
+		if (record.limboSize[i] == record.limbo[i].length) {
+			Object[] grown = new Object[2 * record.limbo[i].length];
+			System.arraycopy(record.limbo[i], 0, grown, 0, record.limboSize[i]);
+			record.limbo[i] = grown;
+		}
+		record.limbo[i][record.limboSize[i]++] = node;
+		retired(record);
+		if (record.pending >= ADVANCE_THRESHOLD) {
+			account(record, 0);
+			tryAdvance(epoch);
+		}
+	}
+
+	/**
+	 * Advances the global epoch if every active thread announced it.
+	 */
+	private void tryAdvance(long epoch) {
+		for (ThreadRecord record : records) {
+			EpochRecord epochRecord = (EpochRecord) record;
+			if (epochRecord.active && epochRecord.epoch != epoch)
+				return;
+		}
+		globalEpoch.compareAndSet(epoch, epoch + 1);
+	}
+
+	/**
+	 * Moves the limbo list i of the record to its pool.
+	 * 
+	 * @return the number of reclaimed nodes
+	 */
+	private int reclaim(EpochRecord record, int i) {
+		Object[] limbo = record.limbo[i];
+		int size = record.limboSize[i];
+		for (int j = 0; j < size; j++) {
+			reclaimed(record, limbo[j]);
+			limbo[j] = null;
+		}
+		record.limboSize[i] = 0;
+		return size;
+	}
+
+	@Override
+	public String getName() {
+		return ReclaimerFactory.EPOCH;
+	}
+}
@@ -0,0 +1,110 @@
+package contention.abstractions;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Hazard-pointer memory reclamation. Each thread publishes the nodes it is
+ * about to access in a few hazard slots, and re-checks that they are still
+ * reachable before accessing them. A thread scans the slots of all threads
+ * once its retired list reaches its scan threshold, and reclaims the
+ * retired nodes that no slot protects.
+ * 
+ * Unlike epochs, a stalled thread only holds back the nodes in its slots,
+ * so the unreclaimed nodes stay bounded.
+ * 
+ * Based on M. M. Michael. Hazard pointers: Safe memory reclamation for
+ * lock-free objects. IEEE TPDS 15(6):491-504, 2004.
+ */
+public class HazardPointerReclaimer<N> extends
+		AbstractMemoryReclaimer<N, HazardPointerReclaimer.HazardRecord> {
+
+	/** The number of hazard slots per thread */
+	public static final int SLOTS = 3;
+	/** The lower bound of the scan threshold of a thread */
+	static final int MIN_SCAN_THRESHOLD = 64;
+
+	static final class HazardRecord extends ThreadRecord {
+		final AtomicReferenceArray<Object> hazards = new AtomicReferenceArray<Object>(SLOTS);
+		Object[] retiredNodes = new Object[MIN_SCAN_THRESHOLD];
+		int retiredSize = 0;
+		/** The retired list size that triggers the next scan */
+		int scanThreshold = MIN_SCAN_THRESHOLD;
+	}
+
+	@Override
+	protected HazardRecord newRecord() {
+		return new HazardRecord();
+	}
+
+	@Override
+	public void enter() {
+		// nodes are protected one by one
+	}
+
+	@Override
+	public void exit() {
+		HazardRecord record = record();
+		for (int i = 0; i < SLOTS; i++)
+			record.hazards.lazySet(i, null);
+	}
+
+	@Override
+	public void protect(int slot, N node) {
+		record().hazards.set(slot, node);
+	}
+
+	@Override
+	public void retire(N node) {
+		HazardRecord record = record();
+		if (record.retiredSize == record.retiredNodes.length) {
+			Object[] grown = new Object[2 * record.retiredNodes.length];
+			System.arraycopy(record.retiredNodes, 0, grown, 0, record.retiredSize);
+			record.retiredNodes = grown;
+		}
+		record.retiredNodes[record.retiredSize++] = node;
+		retired(record);
+		if (record.retiredSize >= record.scanThreshold)
+			scan(record);
+	}
+
+	/**
+	 * Reclaims the retired nodes of the record that no hazard slot
+	 * protects, and adapts the scan threshold of the record to the number
+	 * of hazard slots, so that a scan reclaims a constant fraction of the
+	 * retired nodes on average.
+	 */
+	private void scan(HazardRecord record) {
+		// publish the retirements first, so that the peak includes them
+		account(record, 0);
+		ThreadRecord[] all = records;
+		Set<Object> hazards = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		for (ThreadRecord other : all) {
+			AtomicReferenceArray<Object> slots = ((HazardRecord) other).hazards;
+			for (int i = 0; i < SLOTS; i++) {
+				Object hazard = slots.get(i);
+				if (hazard != null)
+					hazards.add(hazard);
+			}
+		}
+		int kept = 0;
+		for (int j = 0; j < record.retiredSize; j++) {
+			Object node = record.retiredNodes[j];
+			record.retiredNodes[j] = null;
+			if (hazards.contains(node))
+				record.retiredNodes[kept++] = node;
+			else
+				reclaimed(record, node);
+		}
+		account(record, record.retiredSize - kept);
+		record.retiredSize = kept;
+		record.scanThreshold = Math.max(MIN_SCAN_THRESHOLD, 2 * SLOTS * all.length + kept);
+	}
+
+	@Override
+	public String getName() {
+		return ReclaimerFactory.HAZARD;
+	}
+}
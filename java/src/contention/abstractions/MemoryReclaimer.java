@@ -0,0 +1,48 @@
+package contention.abstractions;
+
+/*
+ * Memory reclamation interface of the node-based structures
+ * 
+ * Removed nodes are retired rather than dropped, and handed back to 
+ * allocate() once no concurrent operation can still access them, so that
+ * structures recycle their nodes instead of leaving them to the GC.
+ *
+ */
+public interface MemoryReclaimer<N> {
+
+	/**
+	 * Starts an operation on the structure. The nodes the operation reads
+	 * and protects are not recycled before exit() is called.
+	 */
+	public void enter();
+	public void exit();
+
+	/**
+	 * Protects a node in the given slot, overwriting the node it held. The
+	 * caller must check that the node is still reachable after protecting
+	 * it and before accessing it. Slots range from 0 to 
+	 * HazardPointerReclaimer.SLOTS - 1.
+	 */
+	public void protect(int slot, N node);
+
+	/**
+	 * Hands over a node that has been unlinked from the structure. The node
+	 * must not be reachable by operations that enter() afterwards.
+	 */
+	public void retire(N node);
+
+	/**
+	 * Returns a reclaimed node of the current thread, or null if there is
+	 * none and the caller should allocate a new one.
+	 */
+	public N allocate();
+
+	public String getName();
+	public long getRetired();
+	public long getReclaimed();
+	public long getRecycled();
+	public long getPooled();
+	/** Returns the highest number of retired but unreclaimed nodes seen */
+	public long getPeakUnreclaimed();
+	public void resetStats();
+}
@@ -0,0 +1,44 @@
+package contention.abstractions;
+
+/**
+ * Creates the memory reclaimers of the node-recycling structures, so that
+ * the reclamation strategy can be chosen from the command line (option
+ * --reclaim).
+ */
+public class ReclaimerFactory {
+
+	public static final String EPOCH = "epoch";
+	public static final String HAZARD = "hazard";
+
+	public static final String[] NAMES = { EPOCH, HAZARD };
+
+	/** The strategy used by {@link #newReclaimer()} */
+	private static volatile String defaultName = EPOCH;
+
+	/**
+	 * Sets the strategy returned by {@link #newReclaimer()}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the name is unknown
+	 */
+	public static void setDefault(String name) {
+		newReclaimer(name);
+		defaultName = name;
+	}
+
+	public static String getDefault() {
+		return defaultName;
+	}
+
+	public static <N> MemoryReclaimer<N> newReclaimer() {
+		return newReclaimer(defaultName);
+	}
+
+	public static <N> MemoryReclaimer<N> newReclaimer(String name) {
+		if (EPOCH.equals(name))
+			return new EpochReclaimer<N>();
+		if (HAZARD.equals(name))
+			return new HazardPointerReclaimer<N>();
+		throw new IllegalArgumentException("Unknown reclaimer: " + name);
+	}
+}
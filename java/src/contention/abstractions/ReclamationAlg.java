@@ -0,0 +1,18 @@
+package contention.abstractions;
+
+/*
+ * Interface of the structures that recycle their nodes through a
+ * memory reclaimer
+ *
+ */
+public interface ReclamationAlg {
+
+	public MemoryReclaimer<?> getReclaimer();
+
+	/**
+	 * Runs stall in the middle of a traversal of the structure, while the
+	 * traversal has entered the reclaimer and protects the nodes it reached,
+	 * as a thread stalled during an operation would.
+	 */
+	public void stallInTraversal(Runnable stall);
+}
@@ -0,0 +1,15 @@
+package contention.abstractions;
+
+/*
+ * Interface of the sets that iterate over a linearizable snapshot
+ * without blocking their updates
+ *
+ */
+public interface SnapshotAlg {
+
+	/**
+	 * Returns an iterator over the keys of the set at a single point in
+	 * time during the call, in ascending order
+	 */
+	public CompositionalIterator<Integer> snapshotIterator();
+}
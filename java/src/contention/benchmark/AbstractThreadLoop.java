@@ -0,0 +1,150 @@
+package contention.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The state shared by the loops of the benchmark threads: the operation
+ * mix, the keys, the phases, the open-loop schedule and the counters
+ * published for the sampler.
+ */
+public abstract class AbstractThreadLoop implements Runnable, Sampler.Sampled {
+
+	private static final AtomicLongFieldUpdater<AbstractThreadLoop> totalUpdater = AtomicLongFieldUpdater
+			.newUpdater(AbstractThreadLoop.class, "publishedTotal");
+	private static final AtomicLongFieldUpdater<AbstractThreadLoop> failuresUpdater = AtomicLongFieldUpdater
+			.newUpdater(AbstractThreadLoop.class, "publishedFailures");
+
+	/** How long a thread inactive in a phase waits between checks */
+	private static final long IDLE_NANOS = 1000000;
+
+	/** The number of the current thread */
+	protected final short myThreadNum;
+	/** The counter of the false-returning operations */
+	public long failures = 0;
+	/** The counter of the thread operations */
+	public long total = 0;
+	/** The total and the failures, published for the sampler, if any */
+	private volatile long publishedTotal = 0;
+	private volatile long publishedFailures = 0;
+	protected final boolean sampled = Parameters.sampleInterval > 0;
+	/** The random number generator, owned by this thread */
+	final Random rand;
+	/** The generator of the operation keys */
+	KeyGenerator keys;
+	/** The latest key added, shared by the threads of the run */
+	private final AtomicInteger latestKey;
+	/** The latencies per operation, if they are measured */
+	public final LatencyHistogram[] latencies = Parameters.measureLatency ? LatencyHistogram
+			.newOperations() : null;
+	/** The phases of the run, if any, and the index of the current one */
+	private Phases phases;
+	private int phase = -1;
+	/** The number of operations of the thread in each phase */
+	public long[] phaseOps;
+	/** The intended start times of the operations, in the open-loop mode */
+	private Schedule schedule = (Parameters.rate > 0) ? new Schedule(
+			(double) Parameters.rate / Parameters.numThreads) : null;
+
+	/**
+	 * The distribution of methods as an array of percentiles, without
+	 * range queries in the loops that have none
+	 *
+	 * 0%        cdf[0]        cdf[2]           cdf[3]                 100%
+	 * |--writeAll--|--writeSome--|--readAll--|--range--|--readSome--|
+	 * |-----------write----------|--readAll--|--range--|--readSome--| cdf[1]
+	 */
+	int[] cdf = new int[4];
+
+	protected AbstractThreadLoop(short myThreadNum, AtomicInteger latestKey) {
+		this.myThreadNum = myThreadNum;
+		this.latestKey = latestKey;
+		this.rand = XorShiftRandom.newInstance(myThreadNum);
+		this.keys = KeyGenerator.newInstance(rand, Parameters.range, latestKey);
+		/* initialize the method boundaries */
+		assert (Parameters.numWrites >= Parameters.numWriteAlls);
+		setMix(Parameters.numWrites, Parameters.numWriteAlls,
+				Parameters.numSnapshots, Parameters.numRangeQueries);
+	}
+
+	private void setMix(int numWrites, int numWriteAlls, int numSnapshots,
+			int numRangeQueries) {
+		cdf[0] = 10 * numWriteAlls;
+		cdf[1] = 10 * numWrites;
+		cdf[2] = cdf[1] + 10 * numSnapshots;
+		cdf[3] = cdf[2] + 10 * numRangeQueries;
+	}
+
+	/**
+	 * Follows the phases of the run, counting the operations of each.
+	 */
+	public void followPhases(Phases phases) {
+		this.phases = phases;
+		this.phaseOps = new long[phases.size()];
+	}
+
+	/**
+	 * Switches to the operation mix, the key distribution and the share of
+	 * the offered rate of a phase. The schedule restarts, so that a thread
+	 * idle in the previous phase does not catch up on the starts it missed.
+	 */
+	private void enterPhase(int index) {
+		phase = index;
+		Phases.Phase settings = phases.get(index);
+		setMix(settings.numWrites, settings.numWriteAlls,
+				settings.numSnapshots, settings.numRangeQueries);
+		keys = KeyGenerator.newInstance(settings.distribution, rand,
+				Parameters.range, latestKey);
+		if (schedule != null)
+			schedule = new Schedule((double) Parameters.rate
+					/ settings.numThreads);
+	}
+
+	/**
+	 * Tells whether the thread runs in the current phase, entering it if
+	 * it just started, and otherwise idles for a while. Without phases,
+	 * the thread always runs.
+	 */
+	protected boolean activeInPhase() {
+		if (phases == null)
+			return true;
+		int current = phases.current();
+		if (phase != current)
+			enterPhase(current);
+		if (myThreadNum >= phases.get(current).numThreads) {
+			LockSupport.parkNanos(IDLE_NANOS);
+			return false;
+		}
+		phaseOps[current]++;
+		return true;
+	}
+
+	/**
+	 * Waits until the intended start of the next operation in the
+	 * open-loop mode.
+	 * @return the time the latency of the operation is measured from
+	 */
+	protected long startOperation() {
+		return (schedule != null) ? schedule.awaitNext()
+				: (latencies == null) ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Publishes the counters for the sampler with ordered writes, which
+	 * are cheaper than volatile ones.
+	 */
+	protected void publish() {
+		totalUpdater.lazySet(this, total);
+		failuresUpdater.lazySet(this, failures);
+	}
+
+	public long sampledTotal() {
+		return publishedTotal;
+	}
+
+	public long sampledFailures() {
+		return publishedFailures;
+	}
+}
@@ -0,0 +1,38 @@
+package contention.benchmark;
+
+import java.util.Random;
+
+/**
+ * Draws a percentage of the keys uniformly among a hot set, the lowest
+ * keys, and the others uniformly among the remaining keys.
+ */
+public class HotspotKeyGenerator extends KeyGenerator {
+
+	/** The percentage of the operations on the hot keys */
+	private final int hotOps;
+	/** The hot keys lie in [0, hotSize) */
+	private final int hotSize;
+
+	/**
+	 * @param hotOps
+	 *            the percentage of the operations on the hot keys
+	 * @param hotKeys
+	 *            the percentage of the range that is hot
+	 */
+	public HotspotKeyGenerator(Random random, int range, int hotOps,
+			int hotKeys) {
+		super(random, range);
+		if (hotOps < 0 || hotOps > 100 || hotKeys < 0 || hotKeys > 100)
+			throw new IllegalArgumentException(
+					"The hot percentages must lie between 0 and 100");
+		this.hotOps = hotOps;
+		this.hotSize = (int) Math.max(1, (long) range * hotKeys / 100);
+	}
+
+	@Override
+	public int nextKey() {
+		if (hotSize == range || random.nextInt(100) < hotOps)
+			return random.nextInt(hotSize);
+		return hotSize + random.nextInt(range - hotSize);
+	}
+}
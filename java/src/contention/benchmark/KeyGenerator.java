@@ -0,0 +1,93 @@
+package contention.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Draws the keys of the benchmark operations, uniformly over the range.
+ * The benchmark loops and the JMH benchmarks draw their keys from it, so
+ * that they exercise the data structures with the same keys. Its
+ * subclasses skew the keys, and are chosen from the command line (option
+ * --distribution).
+ */
+public class KeyGenerator {
+
+	public static final String UNIFORM = "uniform";
+	public static final String ZIPFIAN = "zipfian";
+	public static final String SCRAMBLED = "scrambled";
+	public static final String HOTSPOT = "hotspot";
+	public static final String SEQUENTIAL = "sequential";
+	public static final String LATEST = "latest";
+
+	public static final String[] NAMES = { UNIFORM, ZIPFIAN, SCRAMBLED,
+			HOTSPOT, SEQUENTIAL, LATEST };
+
+	/** The source of randomness, owned by the calling thread */
+	protected final Random random;
+	/** The keys lie in [0, range) */
+	protected final int range;
+
+	public KeyGenerator(Random random, int range) {
+		this.random = random;
+		this.range = range;
+	}
+
+	/**
+	 * Returns a generator of the distribution chosen on the command line.
+	 */
+	public static KeyGenerator newInstance(Random random, int range,
+			AtomicInteger latest) {
+		return newInstance(Parameters.distribution, random, range, latest);
+	}
+
+	/**
+	 * Returns a generator that shares no state with the others.
+	 */
+	public static KeyGenerator newInstance(String name, Random random,
+			int range) {
+		return newInstance(name, random, range, new AtomicInteger());
+	}
+
+	/**
+	 * @param name
+	 *            one of {@link #NAMES}
+	 * @param latest
+	 *            the latest key added, shared by the generators of the
+	 *            latest distribution of a run
+	 * @throws IllegalArgumentException
+	 *             if the name is unknown
+	 */
+	public static KeyGenerator newInstance(String name, Random random,
+			int range, AtomicInteger latest) {
+		if (UNIFORM.equals(name))
+			return new KeyGenerator(random, range);
+		if (ZIPFIAN.equals(name))
+			return new ZipfianKeyGenerator(random, range, Parameters.theta);
+		if (SCRAMBLED.equals(name))
+			return new ScrambledZipfianKeyGenerator(random, range,
+					Parameters.theta);
+		if (HOTSPOT.equals(name))
+			return new HotspotKeyGenerator(random, range, Parameters.hotOps,
+					Parameters.hotKeys);
+		if (SEQUENTIAL.equals(name))
+			return new SequentialKeyGenerator(random, range);
+		if (LATEST.equals(name))
+			return new LatestKeyGenerator(random, range, Parameters.theta,
+					latest);
+		throw new IllegalArgumentException("Unknown distribution: " + name);
+	}
+
+	/**
+	 * @return the key of the next operation
+	 */
+	public int nextKey() {
+		return random.nextInt(range);
+	}
+
+	/**
+	 * Tells the generator that a key was added by an operation.
+	 * @param key
+	 */
+	public void added(int key) {
+	}
+}
@@ -0,0 +1,55 @@
+package contention.benchmark;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Draws sets of distinct keys for the benchmark initialization.
+ */
+public class KeySampler {
+
+	/**
+	 * Writes to keys[from, to) distinct keys of [lo, hi) in ascending
+	 * order, chosen uniformly among the subsets of that size. The range
+	 * must hold at least to - from keys.
+	 */
+	public static void sample(Random random, int lo, int hi, int[] keys,
+			int from, int to) {
+		int n = hi - lo;
+		if (2L * (to - from) >= n) {
+			// selection sampling: keeps each key with probability
+			// (keys still needed) / (keys still to consider)
+			int i = from;
+			for (int k = 0; i < to; k++) {
+				if (random.nextInt(n - k) < to - i)
+					keys[i++] = lo + k;
+			}
+			return;
+		}
+		// sparse sample: draws the missing keys until there are no
+		// duplicates, which happens quickly as half the range is free
+		int unique = from;
+		while (unique < to) {
+			for (int i = unique; i < to; i++)
+				keys[i] = lo + random.nextInt(n);
+			Arrays.sort(keys, from, to);
+			unique = from;
+			for (int i = from; i < to; i++) {
+				if (unique == from || keys[unique - 1] != keys[i])
+					keys[unique++] = keys[i];
+			}
+		}
+	}
+
+	/**
+	 * Shuffles keys[from, to) in place.
+	 */
+	public static void shuffle(Random random, int[] keys, int from, int to) {
+		for (int i = to - 1; i > from; i--) {
+			int j = from + random.nextInt(i - from + 1);
+			int key = keys[i];
+			keys[i] = keys[j];
+			keys[j] = key;
+		}
+	}
+}
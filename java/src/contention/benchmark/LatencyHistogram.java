@@ -0,0 +1,120 @@
+package contention.benchmark;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of operation latencies in nanoseconds, whose buckets grow
+ * logarithmically as in HdrHistogram: the values below 64 have their own
+ * bucket, and each larger power of two is split into 32 buckets, so that a
+ * percentile is off by less than 1/32 of its value. Recording neither
+ * allocates nor synchronizes, so each benchmark thread owns its histograms,
+ * which are merged once the threads are over.
+ */
+public class LatencyHistogram {
+
+	/** The operations whose latencies are recorded */
+	public static final int ADD = 0, REMOVE = 1, CONTAINS = 2, SIZE = 3,
+			UPDATE = 4, SCAN = 5, READ_MODIFY_WRITE = 6;
+	public static final String[] OPERATIONS = { "add", "remove", "contains",
+			"size", "update", "scan", "read-modify-write" };
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** The values below this bound are counted exactly */
+	private static final int LINEAR = 2 * SUB_BUCKETS;
+	private static final int BUCKETS = LINEAR
+			+ (63 - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count = 0;
+	private long max = 0;
+
+	/**
+	 * @return a histogram per operation, indexed by ADD to
+	 *         READ_MODIFY_WRITE
+	 */
+	public static LatencyHistogram[] newOperations() {
+		LatencyHistogram[] histograms = new LatencyHistogram[OPERATIONS.length];
+		for (int i = 0; i < histograms.length; i++)
+			histograms[i] = new LatencyHistogram();
+		return histograms;
+	}
+
+	private static int bucketOf(long value) {
+		if (value < LINEAR)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return LINEAR + (exponent - (SUB_BUCKET_BITS + 1)) * SUB_BUCKETS
+				+ subBucket;
+	}
+
+	/**
+	 * @return the highest value counted in the bucket
+	 */
+	private static long highestOf(int bucket) {
+		if (bucket < LINEAR)
+			return bucket;
+		int exponent = (bucket - LINEAR) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+		int shift = exponent - SUB_BUCKET_BITS;
+		long subBucket = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * @param nanos the latency of an operation
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts[bucketOf(nanos)]++;
+		count++;
+		if (nanos > max)
+			max = nanos;
+	}
+
+	/**
+	 * Adds the values recorded by another histogram to this one.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] += other.counts[i];
+		count += other.count;
+		max = Math.max(max, other.max);
+	}
+
+	public void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		max = 0;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the value below which this percentage of the recorded values
+	 *         lie, rounded up to the bound of its bucket
+	 */
+	public long getPercentile(double percentile) {
+		if (count == 0)
+			return 0;
+		long rank = (long) Math.ceil(percentile / 100 * count);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank)
+				return Math.min(highestOf(i), max);
+		}
+		return max;
+	}
+}
@@ -0,0 +1,38 @@
+package contention.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Draws the keys next to the latest key added by any thread, following a
+ * Zipfian distribution of the distance: the key just above the latest one
+ * is the most popular, so that additions move the hot keys forward, and
+ * the lookups and removals mostly hit the keys added recently, as in the
+ * latest distribution of YCSB. Keys wrap around at the end of the range.
+ * The latest key is shared by the generators of the threads of a run.
+ */
+public class LatestKeyGenerator extends ZipfianKeyGenerator {
+
+	/** The latest key added, shared by the threads */
+	private final AtomicInteger latest;
+
+	public LatestKeyGenerator(Random random, int range, double theta,
+			AtomicInteger latest) {
+		super(random, range, theta);
+		this.latest = latest;
+	}
+
+	@Override
+	public int nextKey() {
+		long key = (long) latest.get() + 1 - nextRank();
+		return (int) Math.floorMod(key, (long) range);
+	}
+
+	/**
+	 * Makes the key the latest one.
+	 */
+	@Override
+	public void added(int key) {
+		latest.set(key);
+	}
+}
@@ -1,5 +1,8 @@
 package contention.benchmark;
 
+import contention.abstractions.ReclaimerFactory;
+import contention.locks.LockFactory;
+
 /**
  * Parameters of the Java version of the 
  * Synchrobench benchmark.
@@ -12,7 +15,10 @@ public class Parameters {
     	numMilliseconds = 5000,
     	numWrites = 40,
     	numWriteAlls = 0,
+    	batchSize = 1,
     	numSnapshots = 0,
+    	numRangeQueries = 0,
+    	scanLength = 100,
     	range = 2048,
 	size = 1024,
 	warmUp = 5,
@@ -21,4 +27,41 @@ public class Parameters {
     public static boolean detailedStats = false;
 
     public static String benchClassName = new String("skiplists.lockfree.NonBlockingFriendlySkipListMap");
+
+    public static String lockName = LockFactory.REENTRANT;
+    /** The number of sockets of the cohort locks, 0 to detect it */
+    public static int numSockets = 0;
+    /** The memory reclaimer of the node-recycling benchmarks */
+    public static String reclaimerName = ReclaimerFactory.EPOCH;
+    /** Whether a thread stalls inside an operation during the benchmark */
+    public static boolean stallThread = false;
+    /** Whether size() excludes the updates to be linearizable */
+    public static boolean linearizableSize = false;
+    /** Whether the latencies of the operations are measured */
+    public static boolean measureLatency = false;
+    /** The operations per second offered by all threads, 0 for a closed loop */
+    public static long rate = 0;
+    /** The milliseconds between the samples of the throughput, 0 for none */
+    public static int sampleInterval = 0;
+    /** The CSV file of the samples, if they are not printed */
+    public static String sampleFile = null;
+    /** The format of the machine-readable results, one of Report.FORMATS, if any */
+    public static String outputFormat = null;
+    /** The file the results are appended to, if they are not printed */
+    public static String outputFile = null;
+    /** The distribution of the operation keys */
+    public static String distribution = KeyGenerator.UNIFORM;
+    /** The skew of the Zipfian distributions */
+    public static double theta = 0.99;
+    /** The percentages of the operations on the hot keys, and of hot keys */
+    public static int hotOps = 90, hotKeys = 10;
+    /** The YCSB workload of the map benchmarks, one of Workload.NAMES, if any */
+    public static String workload = null;
+    /** The file of the phases of the run, if any */
+    public static String phasesFile = null;
+    /** Whether the random generators are seeded, from seed */
+    public static boolean fixedSeed = false;
+    public static long seed = 0;
+    /** The path of the traces recorded or replayed, suffixed by the thread */
+    public static String recordPath = null, replayPath = null;
 }
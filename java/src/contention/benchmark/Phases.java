@@ -0,0 +1,212 @@
+package contention.benchmark;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A schedule of phases changing the workload during a run (option
+ * --phases), read from a file with a phase per line:
+ * 
+ *   # offset (ms)  settings
+ *   0              u=10 t=4
+ *   2000           u=50 distribution=zipfian
+ *   5000           u=0 t=1 s=10
+ * 
+ * Each phase starts at its offset from the start of the run and changes
+ * the settings it lists, the others keeping their values from the
+ * previous phase, or from the command line for the first one. The
+ * settings are u, a, s and q, the percentages of updates, writeAlls,
+ * readAlls and range queries, distribution, the key distribution, and t,
+ * the number of active threads, at most the number of threads. Phases
+ * cannot be combined with traces or workloads, and q only applies to the
+ * benchmarks with range queries.
+ */
+public class Phases {
+
+	/**
+	 * The settings of a phase.
+	 */
+	public static class Phase {
+		public final long offset;
+		public int numWrites, numWriteAlls, numSnapshots, numRangeQueries;
+		public String distribution;
+		public int numThreads;
+
+		Phase(long offset, Phase previous) {
+			this.offset = offset;
+			if (previous == null) {
+				numWrites = Parameters.numWrites;
+				numWriteAlls = Parameters.numWriteAlls;
+				numSnapshots = Parameters.numSnapshots;
+				numRangeQueries = Parameters.numRangeQueries;
+				distribution = Parameters.distribution;
+				numThreads = Parameters.numThreads;
+			} else {
+				numWrites = previous.numWrites;
+				numWriteAlls = previous.numWriteAlls;
+				numSnapshots = previous.numSnapshots;
+				numRangeQueries = previous.numRangeQueries;
+				distribution = previous.distribution;
+				numThreads = previous.numThreads;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "u=" + numWrites + " a=" + numWriteAlls + " s="
+					+ numSnapshots + " q=" + numRangeQueries
+					+ " distribution=" + distribution + " t=" + numThreads;
+		}
+	}
+
+	private final Phase[] phases;
+	/** The index of the running phase, set by the main thread */
+	private volatile int current = 0;
+
+	private Phases(Phase[] phases) {
+		this.phases = phases;
+	}
+
+	/**
+	 * Reads the phases of a file.
+	 * 
+	 * @param rangeQueries
+	 *            whether the benchmark runs range queries
+	 * @throws IOException
+	 *             if the file cannot be read
+	 * @throws IllegalArgumentException
+	 *             if a phase is malformed
+	 */
+	public static Phases read(String file, boolean rangeQueries)
+			throws IOException {
+		List<Phase> phases = new ArrayList<Phase>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			int lineNum = 0;
+			while ((line = in.readLine()) != null) {
+				lineNum++;
+				int comment = line.indexOf('#');
+				if (comment >= 0)
+					line = line.substring(0, comment);
+				line = line.trim();
+				if (line.isEmpty())
+					continue;
+				try {
+					phases.add(parse(line, phases, rangeQueries));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(file + ":" + lineNum
+							+ ": " + e.getMessage());
+				}
+			}
+		} finally {
+			in.close();
+		}
+		if (phases.isEmpty())
+			throw new IllegalArgumentException(file + ": no phase");
+		// the command line settings run until the first phase
+		if (phases.get(0).offset > 0)
+			phases.add(0, new Phase(0, null));
+		return new Phases(phases.toArray(new Phase[phases.size()]));
+	}
+
+	private static Phase parse(String line, List<Phase> previous,
+			boolean rangeQueries) {
+		String[] tokens = line.split("\\s+");
+		long offset = Long.parseLong(tokens[0]);
+		Phase last = previous.isEmpty() ? null : previous.get(previous.size() - 1);
+		if (offset < 0 || (last != null && offset <= last.offset))
+			throw new IllegalArgumentException(
+					"the offsets must be positive and increasing");
+		Phase phase = new Phase(offset, last);
+		for (int i = 1; i < tokens.length; i++) {
+			int equals = tokens[i].indexOf('=');
+			if (equals < 0)
+				throw new IllegalArgumentException("not a setting: " + tokens[i]);
+			String name = tokens[i].substring(0, equals);
+			String value = tokens[i].substring(equals + 1);
+			if (name.equals("u"))
+				phase.numWrites = Integer.parseInt(value);
+			else if (name.equals("a"))
+				phase.numWriteAlls = Integer.parseInt(value);
+			else if (name.equals("s"))
+				phase.numSnapshots = Integer.parseInt(value);
+			else if (name.equals("q"))
+				phase.numRangeQueries = Integer.parseInt(value);
+			else if (name.equals("distribution"))
+				phase.distribution = value;
+			else if (name.equals("t"))
+				phase.numThreads = Integer.parseInt(value);
+			else
+				throw new IllegalArgumentException("unknown setting: " + name);
+		}
+		if (phase.numRangeQueries > 0 && !rangeQueries)
+			throw new IllegalArgumentException(
+					"range queries are not supported by the benchmark");
+		if (phase.numThreads < 1 || phase.numThreads > Parameters.numThreads)
+			throw new IllegalArgumentException("t must lie between 1 and "
+					+ Parameters.numThreads);
+		if (phase.numWriteAlls > phase.numWrites
+				|| phase.numWrites + phase.numSnapshots
+						+ phase.numRangeQueries > 100)
+			throw new IllegalArgumentException("the percentages exceed 100");
+		// fails on an unknown distribution
+		KeyGenerator.newInstance(phase.distribution,
+				XorShiftRandom.newInstance(0), Parameters.range);
+		return phase;
+	}
+
+	public int size() {
+		return phases.length;
+	}
+
+	public Phase get(int index) {
+		return phases[index];
+	}
+
+	/**
+	 * @return the index of the running phase
+	 */
+	public int current() {
+		return current;
+	}
+
+	/**
+	 * Goes back to the first phase, before a run.
+	 */
+	public void reset() {
+		current = 0;
+	}
+
+	/**
+	 * Runs the phases over the given duration, from its start, switching
+	 * the running phase at each offset.
+	 */
+	public void run(long startTime, long milliseconds)
+			throws InterruptedException {
+		for (int i = 0; i < phases.length; i++) {
+			if (phases[i].offset >= milliseconds)
+				break;
+			long wait = startTime + phases[i].offset - System.currentTimeMillis();
+			if (wait > 0)
+				Thread.sleep(wait);
+			current = i;
+		}
+		long wait = startTime + milliseconds - System.currentTimeMillis();
+		if (wait > 0)
+			Thread.sleep(wait);
+	}
+
+	/**
+	 * @return the duration of a phase within a run of the given duration,
+	 *         in milliseconds
+	 */
+	public long duration(int index, long milliseconds) {
+		long end = (index + 1 < phases.length) ? Math.min(
+				phases[index + 1].offset, milliseconds) : milliseconds;
+		return Math.max(0, end - phases[index].offset);
+	}
+}
@@ -0,0 +1,175 @@
+package contention.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A machine-readable record of the results of an iteration (option
+ * --output), so that the runs can be collected without scraping the text
+ * report. The record groups its fields into sections, such as the
+ * parameters, the operation counts, the latencies and the JVM, and is
+ * written either as a JSON line, a section being an object, or as a CSV
+ * row, a column being named section.field.
+ *
+ * The records are appended to the output file (option --output-file) or
+ * printed. A CSV header is written before the first row of the file, so
+ * every record of a file must have the same fields.
+ */
+public class Report {
+
+	public static final String JSON = "json";
+	public static final String CSV = "csv";
+	public static final String[] FORMATS = { JSON, CSV };
+
+	private final Map<String, Map<String, Object>> sections = new LinkedHashMap<String, Map<String, Object>>();
+	/** Whether the CSV header has been printed, without an output file */
+	private static boolean headerPrinted = false;
+
+	/**
+	 * Sets a field of a section, the fields keeping the order in which they
+	 * are first set. A null value is written as a JSON null or an empty CSV
+	 * cell.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if a name holds a dot, which would make the CSV column
+	 *             name ambiguous
+	 */
+	public Report put(String section, String field, Object value) {
+		if (section.indexOf('.') >= 0 || field.indexOf('.') >= 0)
+			throw new IllegalArgumentException("A dot in " + section + "."
+					+ field);
+		Map<String, Object> fields = sections.get(section);
+		if (fields == null) {
+			fields = new LinkedHashMap<String, Object>();
+			sections.put(section, fields);
+		}
+		fields.put(field, value);
+		return this;
+	}
+
+	/**
+	 * Checks the name of a format.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if it is not one of FORMATS
+	 */
+	public static String checkFormat(String format) {
+		for (String name : FORMATS)
+			if (name.equals(format))
+				return name;
+		throw new IllegalArgumentException("Unknown output format: " + format);
+	}
+
+	/**
+	 * Appends the record to a file, or prints it if the path is null.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void write(String format, String path) throws IOException {
+		if (path == null) {
+			if (CSV.equals(format) && !headerPrinted) {
+				System.out.println(toCsvHeader());
+				headerPrinted = true;
+			}
+			System.out.println(CSV.equals(format) ? toCsv() : toJson());
+			return;
+		}
+		File file = new File(path);
+		boolean empty = file.length() == 0;
+		PrintStream out = new PrintStream(new FileOutputStream(file, true));
+		try {
+			if (CSV.equals(format)) {
+				if (empty)
+					out.println(toCsvHeader());
+				out.println(toCsv());
+			} else {
+				out.println(toJson());
+			}
+			if (out.checkError())
+				throw new IOException("Cannot write to " + path);
+		} finally {
+			out.close();
+		}
+	}
+
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{");
+		String sectionSeparator = "";
+		for (Map.Entry<String, Map<String, Object>> section : sections
+				.entrySet()) {
+			json.append(sectionSeparator).append(quote(section.getKey()))
+					.append(":{");
+			String separator = "";
+			for (Map.Entry<String, Object> field : section.getValue()
+					.entrySet()) {
+				json.append(separator).append(quote(field.getKey()))
+						.append(':').append(jsonValue(field.getValue()));
+				separator = ",";
+			}
+			json.append('}');
+			sectionSeparator = ",";
+		}
+		return json.append('}').toString();
+	}
+
+	public String toCsvHeader() {
+		StringBuilder csv = new StringBuilder();
+		for (Map.Entry<String, Map<String, Object>> section : sections
+				.entrySet())
+			for (String field : section.getValue().keySet())
+				csv.append(csv.length() == 0 ? "" : ",").append(
+						csvValue(section.getKey() + "." + field));
+		return csv.toString();
+	}
+
+	public String toCsv() {
+		StringBuilder csv = new StringBuilder();
+		String separator = "";
+		for (Map<String, Object> fields : sections.values())
+			for (Object value : fields.values()) {
+				csv.append(separator).append(
+						value == null ? "" : csvValue(value.toString()));
+				separator = ",";
+			}
+		return csv.toString();
+	}
+
+	private static String jsonValue(Object value) {
+		if (value == null)
+			return "null";
+		if (value instanceof Double || value instanceof Float) {
+			double number = ((Number) value).doubleValue();
+			return (Double.isNaN(number) || Double.isInfinite(number)) ? "null"
+					: value.toString();
+		}
+		if (value instanceof Number || value instanceof Boolean)
+			return value.toString();
+		return quote(value.toString());
+	}
+
+	private static String quote(String string) {
+		StringBuilder quoted = new StringBuilder("\"");
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if (c < 0x20)
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+
+	private static String csvValue(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+				&& value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+			return value;
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+}
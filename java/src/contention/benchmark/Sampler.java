@@ -0,0 +1,118 @@
+package contention.benchmark;
+
+import java.io.PrintStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Samples the throughput and the failures of the benchmark threads at a
+ * fixed interval during a run (option --sample-interval), so that its
+ * stalls, such as the JIT compilations, the GC pauses or the resizes of a
+ * structure, show instead of vanishing in the average of the run.
+ *
+ * Each sample gives the operations and failures of the interval that
+ * ends at its time. The samples are printed, or appended to a CSV file
+ * (option --sample-file) with the columns of HEADER.
+ */
+public class Sampler implements Runnable {
+
+	/** The columns of the CSV file */
+	public static final String HEADER = "run,time_ms,interval_ms,operations,throughput,failures,failures_per_s";
+
+	/**
+	 * The counters a benchmark thread publishes for the sampler, which
+	 * reads them while the thread runs.
+	 */
+	public interface Sampled {
+		/** @return the operations completed so far */
+		long sampledTotal();
+
+		/** @return the operations that failed so far */
+		long sampledFailures();
+	}
+
+	private final Sampled[] threads;
+	private final long intervalNanos;
+	/** The CSV file, or null to print the samples */
+	private final PrintStream csv;
+	/** The run the samples belong to, warmup or the number of an iteration */
+	private final String run;
+	private volatile boolean stop = false;
+	private Thread thread;
+
+	public Sampler(Sampled[] threads, long intervalMillis, PrintStream csv,
+			String run) {
+		this.threads = threads;
+		this.intervalNanos = intervalMillis * 1000000L;
+		this.csv = csv;
+		this.run = run;
+	}
+
+	/**
+	 * Starts sampling, from now on.
+	 */
+	public void start() {
+		thread = new Thread(this, "sampler");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Takes a last sample, of the time since the previous one unless it is
+	 * under a tenth of the interval, and stops sampling.
+	 */
+	public void stop() throws InterruptedException {
+		stop = true;
+		LockSupport.unpark(thread);
+		thread.join();
+	}
+
+	public void run() {
+		long start = System.nanoTime();
+		long last = start;
+		long lastTotal = 0, lastFailures = 0;
+		if (csv == null)
+			System.out.println(String.format("%-27s", "  Samples of run " + run
+					+ ":") + "\tthroughput (ops/s)\tfailures (/s)");
+		long next = start + intervalNanos;
+		boolean over = false;
+		while (!over) {
+			long now = System.nanoTime();
+			while (!stop && now < next) {
+				LockSupport.parkNanos(next - now);
+				now = System.nanoTime();
+			}
+			over = stop;
+			long total = 0, failures = 0;
+			for (Sampled sampled : threads) {
+				total += sampled.sampledTotal();
+				failures += sampled.sampledFailures();
+			}
+			// a last sample much shorter than the interval would only be noise
+			if (!over || now - last >= intervalNanos / 10)
+				emit(now - start, now - last, total - lastTotal, failures
+						- lastFailures);
+			last = now;
+			lastTotal = total;
+			lastFailures = failures;
+			// a late sample, e.g. in a GC pause, keeps the later ones aligned
+			while (next <= now)
+				next += intervalNanos;
+		}
+	}
+
+	private void emit(long time, long interval, long operations, long failures) {
+		double seconds = interval / 1e9;
+		if (csv != null) {
+			csv.println(run + "," + time / 1000000 + "," + interval / 1000000
+					+ "," + operations + "," + operations / seconds + ","
+					+ failures + "," + failures / seconds);
+		} else {
+			System.out.println(String.format("%-27s", "    |--" + time
+					/ 1000000 + " ms:")
+					+ "\t"
+					+ String.format("%.2f", operations / seconds)
+					+ "\t"
+					+ String.format("%.2f", failures / seconds));
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package contention.benchmark;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The intended start times of the operations of a thread in the open-loop
+ * mode, evenly spaced to offer a fixed rate. The schedule does not slow
+ * down when an operation is late: the next ones start as soon as possible
+ * until the thread catches up, and their latencies are measured from the
+ * intended start times, so that a stall of the data structure shows in the
+ * latencies of all the operations it delays (no coordinated omission).
+ */
+public class Schedule {
+
+	/** The threads spin instead of parking below this wait */
+	private static final long SPIN_NANOS = 50000;
+
+	/** The time between two intended starts, in nanoseconds */
+	private final double interval;
+	/** The time of the first start, set by the first operation */
+	private long origin;
+	/** The number of operations started */
+	private long count = 0;
+
+	/**
+	 * @param rate the number of operations per second of this thread
+	 */
+	public Schedule(double rate) {
+		this.interval = 1e9 / rate;
+	}
+
+	/**
+	 * Waits until the intended start of the next operation.
+	 * @return the intended start, in System.nanoTime time
+	 */
+	public long awaitNext() {
+		if (count == 0)
+			origin = System.nanoTime();
+		long intended = origin + (long) (interval * count++);
+		long wait;
+		while ((wait = intended - System.nanoTime()) > 0) {
+			if (wait > SPIN_NANOS)
+				LockSupport.parkNanos(wait - SPIN_NANOS);
+			else
+				Thread.onSpinWait();
+		}
+		return intended;
+	}
+}
@@ -0,0 +1,36 @@
+package contention.benchmark;
+
+import java.util.Random;
+
+/**
+ * Draws the keys following a Zipfian distribution whose ranks are hashed
+ * over the range, so that the popular keys are spread out instead of
+ * being the lowest ones, as in YCSB.
+ */
+public class ScrambledZipfianKeyGenerator extends ZipfianKeyGenerator {
+
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 1099511628211L;
+
+	public ScrambledZipfianKeyGenerator(Random random, int range, double theta) {
+		super(random, range, theta);
+	}
+
+	/**
+	 * The 64-bit FNV-1a hash of the bytes of a value.
+	 */
+	static long fnvHash(long value) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < 8; i++) {
+			hash ^= value & 0xff;
+			hash *= FNV_PRIME;
+			value >>>= 8;
+		}
+		return hash;
+	}
+
+	@Override
+	public int nextKey() {
+		return (int) Long.remainderUnsigned(fnvHash(nextRank()), range);
+	}
+}
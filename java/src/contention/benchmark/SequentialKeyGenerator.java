@@ -0,0 +1,24 @@
+package contention.benchmark;
+
+import java.util.Random;
+
+/**
+ * Goes through the keys in ascending order, wrapping around at the end of
+ * the range. Each thread starts at a random key.
+ */
+public class SequentialKeyGenerator extends KeyGenerator {
+
+	private int next;
+
+	public SequentialKeyGenerator(Random random, int range) {
+		super(random, range);
+		this.next = random.nextInt(range);
+	}
+
+	@Override
+	public int nextKey() {
+		int key = next;
+		next = (key == range - 1) ? 0 : key + 1;
+		return key;
+	}
+}
@@ -2,15 +2,31 @@ package contention.benchmark;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.Formatter;
 import java.util.Locale;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import contention.abstractions.AbstractCompositionalIntSet;
+import contention.abstractions.BulkLoadAlg;
 import contention.abstractions.CompositionalIntSet;
+import contention.abstractions.CompositionalIntIntMap;
 import contention.abstractions.CompositionalMap;
+import contention.abstractions.CompositionalRangeQuery;
 import contention.abstractions.CompositionalSortedSet;
 import contention.abstractions.MaintenanceAlg;
+import contention.abstractions.MemoryReclaimer;
+import contention.abstractions.ReclaimerFactory;
+import contention.abstractions.ReclamationAlg;
+import contention.abstractions.SnapshotAlg;
+import contention.locks.CohortLock;
+import contention.locks.LockFactory;
 
 /**
  * Synchrobench-java, a benchmark to evaluate the implementations of 
@@ -24,13 +40,14 @@ public class Test {
 	public static final String VERSION = "2018-08-31";
 	
 	public enum Type {
-	    INTSET, MAP, SORTEDSET
+	    INTSET, MAP, INTMAP, SORTEDSET
 	}
 
 	/** The array of threads executing the benchmark */
 	private Thread[] threads;
 	/** The array of runnable thread codes */
 	private ThreadLoop[] threadLoops;
+	private ThreadIntMapLoop[] threadLoopsIntMap;
 	private ThreadSetLoop[] threadLoopsSet;
 	private ThreadSortedSetLoop[] threadLoopsSSet;
 	/** The observed duration of the benchmark */
@@ -49,15 +66,32 @@ public class Test {
 	private long numRemoveAll = 0;
 	private long numSize = 0;
 	private long numContains = 0;
+	private long numUpdate = 0;
+	private long numRangeQueries = 0;
+	/** The total number of keys returned by range queries */
+	private long keysScanned = 0;
+	/** The total and longest durations of the snapshot iterations */
+	private long snapshotNanos = 0;
+	private long maxSnapshotNanos = 0;
 	/** The total number of failed operations for all threads */
 	private long failures = 0;
 	/** The total number of aborts */
 	private long aborts = 0;
+	/** The CSV file of the throughput samples, if any */
+	private PrintStream samples = null;
+	/** The phases of the run, if any, and those of the running iteration */
+	private Phases phases = null;
+	private Phases runningPhases = null;
+	/** The latest key added, shared by the key generators of the threads */
+	private final AtomicInteger latestKey = new AtomicInteger();
+	/** The latencies per operation of all threads */
+	private final LatencyHistogram[] latencies = LatencyHistogram.newOperations();
 	/** The instance of the benchmark */
 	private Type benchType = null;
 	private CompositionalIntSet setBench = null;
 	private CompositionalSortedSet<Integer> sortedBench = null;
 	private CompositionalMap<Integer, Integer> mapBench = null;
+	private CompositionalIntIntMap intMapBench = null;
 	ConcurrentHashMap<Integer, Integer> map = null;
 	/** The instance of the benchmark */
 	/** The benchmark methods */
@@ -67,37 +101,84 @@ public class Test {
 	public long structMods;
 	private long getCount;
 
-	/** The thread-private PRNG */
-	final private static ThreadLocal<Random> s_random = new ThreadLocal<Random>() {
-		@Override
-		protected synchronized Random initialValue() {
-			return new Random();
+	/**
+	 * Fills the benchmark with size distinct keys of [0, range), across as
+	 * many filler threads as benchmark threads. Each filler samples the
+	 * same share of the keys in its own subrange, so that no key is drawn
+	 * twice. A set implementing BulkLoadAlg is then built at once from the
+	 * sorted keys, otherwise each filler inserts its keys in random order.
+	 */
+	public void fill(final int range, final long size)
+			throws InterruptedException {
+		if (size > range) {
+			System.err.println("Cannot fill " + size
+					+ " distinct elements out of a range of " + range);
+			System.exit(-1);
 		}
-	};
-
-	public void fill(final int range, final long size) {
-		for (long i = size; i > 0;) {
-			Integer v = s_random.get().nextInt(range);
-			switch(benchType) {
-			case INTSET:
-				if (setBench.addInt(v)) {
-					i--;
+		// the latest keys of a run do not depend on the previous ones
+		latestKey.set(0);
+		final int fillers = (int) Math.max(1,
+				Math.min(Parameters.numThreads, size));
+		final boolean bulk = (benchType == Type.INTSET)
+				&& (setBench instanceof BulkLoadAlg);
+		final int[] keys = bulk ? new int[(int) size] : null;
+		final AtomicLong inserted = new AtomicLong();
+		Thread[] threads = new Thread[fillers];
+		for (int filler = 0; filler < fillers; filler++) {
+			final int lo = (int) ((long) range * filler / fillers);
+			final int hi = (int) ((long) range * (filler + 1) / fillers);
+			// the share of the subrange, never more keys than it holds
+			final int from = (int) (size * lo / range);
+			final int to = (int) (size * hi / range);
+			// the fillers draw from other streams than the benchmark threads
+			final Random random = XorShiftRandom.newInstance(-1 - filler);
+			threads[filler] = new Thread(new Runnable() {
+				public void run() {
+					if (bulk) {
+						KeySampler.sample(random, lo, hi, keys, from, to);
+						return;
+					}
+					int[] share = new int[to - from];
+					KeySampler.sample(random, lo, hi, share, 0, share.length);
+					KeySampler.shuffle(random, share, 0, share.length);
+					long count = 0;
+					for (int v : share) {
+						if (insert(v))
+							count++;
+					}
+					inserted.addAndGet(count);
 				}
-				break;
-			case MAP:
-				if (mapBench.putIfAbsent((Integer) v, (Integer) v) == null) {
-					i--;
-				}	
-				break;
-			case SORTEDSET:
-				if (sortedBench.add((Integer) v)) {
-					i--;
-				}	
-				break;
-			default:
-				System.err.println("Wrong benchmark type");
-				System.exit(0);
-			}	
+			});
+			threads[filler].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		if (bulk) {
+			((BulkLoadAlg) setBench).bulkLoad(keys);
+		} else if (inserted.get() < size) {
+			System.err.println("Only " + inserted.get() + " out of " + size
+					+ " elements could be inserted");
+		}
+	}
+
+	/**
+	 * Inserts a key during the fill.
+	 * @return false if it was not inserted
+	 */
+	private boolean insert(int v) {
+		switch(benchType) {
+		case INTSET:
+			return setBench.addInt(v);
+		case MAP:
+			return mapBench.putIfAbsent((Integer) v, (Integer) v) == null;
+		case INTMAP:
+			return intMapBench.putIfAbsentInt(v, v) == CompositionalIntIntMap.NO_VALUE;
+		case SORTEDSET:
+			return sortedBench.add((Integer) v);
+		default:
+			System.err.println("Wrong benchmark type");
+			System.exit(0);
+			return false;
 		}
 	}
 
@@ -122,6 +203,9 @@ public class Test {
 			if (CompositionalIntSet.class.isAssignableFrom((Class<?>) benchClass)) {
 				setBench = (CompositionalIntSet)c.newInstance();
 				benchType = Type.INTSET;
+			} else if (CompositionalIntIntMap.class.isAssignableFrom((Class<?>) benchClass)) {
+				intMapBench = (CompositionalIntIntMap) c.newInstance();
+				benchType = Type.INTMAP;
 			} else if (CompositionalMap.class.isAssignableFrom((Class<?>) benchClass)) {
 				mapBench = (CompositionalMap<Integer, Integer>) c.newInstance();
 				benchType = Type.MAP;
@@ -137,35 +221,81 @@ public class Test {
 	}
 	
 
+	/**
+	 * Opens the trace of each thread of the integer set benchmark, to be
+	 * replayed (option --replay) or recorded (option --record), the latter
+	 * only once warmed up, so that the last iteration is recorded.
+	 */
+	private void openTraces(boolean warmUp) {
+		String path = Parameters.replayPath;
+		try {
+			for (short threadNum = 0; threadNum < Parameters.numThreads; threadNum++) {
+				path = Parameters.replayPath;
+				if (path != null)
+					threadLoopsSet[threadNum].replay(new TraceReader(Trace
+							.fileOf(path, threadNum)));
+				path = Parameters.recordPath;
+				if (path != null && !warmUp)
+					threadLoopsSet[threadNum].record(new TraceWriter(Trace
+							.fileOf(path, threadNum)));
+			}
+		} catch (IOException e) {
+			System.err.println("Cannot open the traces " + path + ".*: "
+					+ e.getMessage());
+			System.exit(-1);
+		}
+	}
+
 	/**
 	 * Creates as many threads as requested
 	 * 
 	 * @throws InterruptedException
 	 *             if unable to launch them
 	 */
-	private void initThreads() throws InterruptedException {
+	private void initThreads(boolean warmUp) throws InterruptedException {
+		// the warm-up runs the settings of the command line
+		runningPhases = warmUp ? null : phases;
 		switch(benchType) {
 		case INTSET:
 			threadLoopsSet = new ThreadSetLoop[Parameters.numThreads];
 			threads = new Thread[Parameters.numThreads];
 			for (short threadNum = 0; threadNum < Parameters.numThreads; threadNum++) {
-				threadLoopsSet[threadNum] = new ThreadSetLoop(threadNum, setBench, methods);
+				threadLoopsSet[threadNum] = new ThreadSetLoop(threadNum, setBench, methods,
+						latestKey);
+				if (runningPhases != null)
+					threadLoopsSet[threadNum].followPhases(runningPhases);
 				threads[threadNum] = new Thread(threadLoopsSet[threadNum]);
 			}
+			openTraces(warmUp);
 			break;
 		case MAP:
 			threadLoops = new ThreadLoop[Parameters.numThreads];
 			threads = new Thread[Parameters.numThreads];
 			for (short threadNum = 0; threadNum < Parameters.numThreads; threadNum++) {
-				threadLoops[threadNum] = new ThreadLoop(threadNum, mapBench, methods);
+				threadLoops[threadNum] = new ThreadLoop(threadNum, mapBench, methods,
+						latestKey);
+				if (runningPhases != null)
+					threadLoops[threadNum].followPhases(runningPhases);
 				threads[threadNum] = new Thread(threadLoops[threadNum]);
 			}
 			break;
+		case INTMAP:
+			threadLoopsIntMap = new ThreadIntMapLoop[Parameters.numThreads];
+			threads = new Thread[Parameters.numThreads];
+			for (short threadNum = 0; threadNum < Parameters.numThreads; threadNum++) {
+				threadLoopsIntMap[threadNum] = new ThreadIntMapLoop(threadNum, intMapBench, methods,
+						latestKey);
+				if (runningPhases != null)
+					threadLoopsIntMap[threadNum].followPhases(runningPhases);
+				threads[threadNum] = new Thread(threadLoopsIntMap[threadNum]);
+			}
+			break;
 		case SORTEDSET:
 			threadLoopsSSet = new ThreadSortedSetLoop[Parameters.numThreads];
 			threads = new Thread[Parameters.numThreads];
 			for (short threadNum = 0; threadNum < Parameters.numThreads; threadNum++) {
-				threadLoopsSSet[threadNum] = new ThreadSortedSetLoop(threadNum, sortedBench, methods);
+				threadLoopsSSet[threadNum] = new ThreadSortedSetLoop(threadNum, sortedBench, methods,
+						latestKey);
 				threads[threadNum] = new Thread(threadLoopsSSet[threadNum]);
 			}
 			break;
@@ -187,7 +317,108 @@ public class Test {
 			System.err.println("Cannot parse parameters.");
 			e.printStackTrace();
 		}
+		try {
+			LockFactory.setDefault(Parameters.lockName);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Cannot find lock: " + Parameters.lockName);
+			System.exit(-1);
+		}
+		if (Parameters.numSockets > 0)
+			CohortLock.setSockets(Parameters.numSockets);
+		try {
+			ReclaimerFactory.setDefault(Parameters.reclaimerName);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Cannot find reclaimer: " + Parameters.reclaimerName);
+			System.exit(-1);
+		}
+		if (Parameters.workload != null) {
+			try {
+				Parameters.distribution = Workload.forName(Parameters.workload).distribution;
+			} catch (IllegalArgumentException e) {
+				System.err.println("Cannot find workload: " + Parameters.workload);
+				System.exit(-1);
+			}
+		}
+		try {
+			KeyGenerator.newInstance(new Random(), Parameters.range, latestKey);
+		} catch (IllegalArgumentException e) {
+			System.err.println("Cannot use key distribution: " + e.getMessage());
+			System.exit(-1);
+		}
+		AbstractCompositionalIntSet.linearizableSize = Parameters.linearizableSize;
 		instanciateAbstraction(Parameters.benchClassName);
+		if (Parameters.numRangeQueries > 0
+				&& !(setBench instanceof CompositionalRangeQuery)) {
+			System.err.println("Range queries are not supported by "
+					+ Parameters.benchClassName);
+			System.exit(-1);
+		}
+		if (Parameters.workload != null) {
+			if (benchType != Type.MAP && benchType != Type.INTMAP) {
+				System.err.println("Workloads are only supported by the map benchmarks");
+				System.exit(-1);
+			}
+			Object map = (benchType == Type.MAP) ? mapBench : intMapBench;
+			if (Workload.forName(Parameters.workload).hasScans()
+					&& !(map instanceof CompositionalRangeQuery)) {
+				System.err.println("Scans are not supported by "
+						+ Parameters.benchClassName);
+				System.exit(-1);
+			}
+		}
+		if (Parameters.outputFormat != null) {
+			try {
+				Report.checkFormat(Parameters.outputFormat);
+			} catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+				System.exit(-1);
+			}
+		} else if (Parameters.outputFile != null) {
+			System.err.println("An output file needs an output format");
+			System.exit(-1);
+		}
+		if (Parameters.sampleInterval < 0) {
+			System.err.println("The sample interval cannot be negative");
+			System.exit(-1);
+		}
+		if (Parameters.sampleFile != null) {
+			if (Parameters.sampleInterval == 0) {
+				System.err.println("A sample file needs a sample interval");
+				System.exit(-1);
+			}
+			try {
+				samples = new PrintStream(new FileOutputStream(
+						Parameters.sampleFile), true);
+			} catch (IOException e) {
+				System.err.println("Cannot open the sample file: "
+						+ e.getMessage());
+				System.exit(-1);
+			}
+			samples.println(Sampler.HEADER);
+		}
+		if (Parameters.phasesFile != null) {
+			if (Parameters.workload != null || Parameters.recordPath != null
+					|| Parameters.replayPath != null
+					|| benchType == Type.SORTEDSET) {
+				System.err.println("Phases cannot be combined with workloads, traces or the sorted set benchmark");
+				System.exit(-1);
+			}
+			try {
+				phases = Phases.read(Parameters.phasesFile,
+						setBench instanceof CompositionalRangeQuery);
+			} catch (IOException e) {
+				System.err.println("Cannot read phases: " + e.getMessage());
+				System.exit(-1);
+			} catch (IllegalArgumentException e) {
+				System.err.println("Cannot read phases: " + e.getMessage());
+				System.exit(-1);
+			}
+		}
+		if ((Parameters.recordPath != null || Parameters.replayPath != null)
+				&& benchType != Type.INTSET) {
+			System.err.println("Traces are only supported by the integer set benchmark");
+			System.exit(-1);
+		}
 		this.throughput = new double[Parameters.iterations];
 	}
 
@@ -201,12 +432,38 @@ public class Test {
 		long startTime;
 		fill(Parameters.range, Parameters.size);
 		Thread.sleep(5000);
+		// only count the handoffs between benchmark threads
+		CohortLock.resetStats();
+		final CountDownLatch stalled = new CountDownLatch(1);
+		Thread staller = startStalledThread(stalled);
+		if (runningPhases != null)
+			runningPhases.reset();
+		Sampler sampler = null;
+		if (Parameters.sampleInterval > 0)
+			sampler = new Sampler(sampledLoops(), Parameters.sampleInterval,
+					samples, maint ? "warmup" : String
+							.valueOf(currentIteration + 1));
 		startTime = System.currentTimeMillis();
 		for (Thread thread : threads)
 			thread.start();
+		if (sampler != null)
+			sampler.start();
 		try {
-			Thread.sleep(milliseconds);
+			if (runningPhases != null) {
+				runningPhases.run(startTime, milliseconds);
+			} else if (Parameters.replayPath == null) {
+				Thread.sleep(milliseconds);
+			} else {
+				// the threads stop at the end of their traces
+				long deadline = startTime + milliseconds;
+				for (Thread thread : threads) {
+					long remaining = deadline - System.currentTimeMillis();
+					if (remaining > 0)
+						thread.join(remaining);
+				}
+			}
 		} finally {
+			stalled.countDown();
 			switch(benchType) {
 			case INTSET:
 				for (ThreadSetLoop threadLoop : threadLoopsSet)
@@ -216,6 +473,10 @@ public class Test {
 				for (ThreadLoop threadLoop : threadLoops)
 					threadLoop.stopThread();
 				break;
+			case INTMAP:
+				for (ThreadIntMapLoop threadLoop : threadLoopsIntMap)
+					threadLoop.stopThread();
+				break;
 			case SORTEDSET:
 				for (ThreadSortedSetLoop threadLoop : threadLoopsSSet)
 					threadLoop.stopThread();
@@ -224,12 +485,70 @@ public class Test {
 		}
 		for (Thread thread : threads)
 			thread.join();
+		if (staller != null)
+			staller.join();
 
 		long endTime = System.currentTimeMillis();
 		elapsedTime = ((double) (endTime - startTime)) / 1000.0;
+		if (sampler != null)
+			sampler.stop();
+	}
+
+	/**
+	 * Returns the loops of the benchmark threads, which publish their
+	 * counters for the sampler.
+	 */
+	private Sampler.Sampled[] sampledLoops() {
+		switch(benchType) {
+		case INTSET:
+			return threadLoopsSet;
+		case MAP:
+			return threadLoops;
+		case INTMAP:
+			return threadLoopsIntMap;
+		default:
+			return threadLoopsSSet;
+		}
+	}
+
+	/**
+	 * Starts a thread that stalls in the middle of a traversal of the
+	 * benchmark, holding the nodes it protects, until the latch is
+	 * released, if option --stall is set and the benchmark recycles its
+	 * nodes.
+	 * 
+	 * @return the stalled thread, or null
+	 */
+	private Thread startStalledThread(final CountDownLatch stalled) {
+		final ReclamationAlg bench = getReclamationAlg();
+		if (!Parameters.stallThread || bench == null)
+			return null;
+		final CountDownLatch entered = new CountDownLatch(1);
+		Thread staller = new Thread(new Runnable() {
+			public void run() {
+				bench.stallInTraversal(new Runnable() {
+					public void run() {
+						entered.countDown();
+						try {
+							stalled.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				});
+			}
+		});
+		staller.start();
+		try {
+			entered.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return staller;
 	}
 
 	public void clear() {
+		latestKey.set(0);
 		switch(benchType) {
 		case INTSET:
 			setBench.clear();
@@ -237,6 +556,9 @@ public class Test {
 		case MAP:
 			mapBench.clear();
 			break;
+		case INTMAP:
+			intMapBench.clear();
+			break;
 		case SORTEDSET:
 			sortedBench.clear();
 			break;
@@ -251,7 +573,7 @@ public class Test {
 		// warming up the JVM
 		if (Parameters.warmUp != 0) {
 			try {
-				test.initThreads();
+				test.initThreads(true);
 			} catch (Exception e) {
 				System.err.println("Cannot launch operations.");
 				e.printStackTrace();
@@ -275,7 +597,7 @@ public class Test {
 				org.deuce.transaction.estmstats.Context.threadIdCounter.set(0);
 			}
 			try {
-				test.initThreads();
+				test.initThreads(false);
 			} catch (Exception e) {
 				System.err.println("Cannot launch operations.");
 				e.printStackTrace();
@@ -292,6 +614,11 @@ public class Test {
 				test.structMods += ((MaintenanceAlg) test.mapBench)
 						.getStructMods();
 			}
+			if (test.intMapBench instanceof MaintenanceAlg) {
+				((MaintenanceAlg) test.intMapBench).stopMaintenance();
+				test.structMods += ((MaintenanceAlg) test.intMapBench)
+						.getStructMods();
+			}
 			if (test.sortedBench instanceof MaintenanceAlg) {
 				((MaintenanceAlg) test.sortedBench).stopMaintenance();
 				test.structMods += ((MaintenanceAlg) test.sortedBench)
@@ -299,6 +626,8 @@ public class Test {
 			}
 
 			test.printBasicStats();
+			if (Parameters.outputFormat != null)
+				test.writeReport();
 			if (Parameters.detailedStats)
 				test.printDetailedStats();
 
@@ -309,6 +638,8 @@ public class Test {
 		if (Parameters.iterations > 1) {
 			test.printIterationStats();
 		}
+		if (test.samples != null)
+			test.samples.close();
 	}
 
 	/* ---------------- Input/Output -------------- */
@@ -329,6 +660,12 @@ public class Test {
 				} else if (currentArg.equals("--verbose")
 						|| currentArg.equals("-v")) {
 					Parameters.detailedStats = true;
+				} else if (currentArg.equals("--stall")) {
+					Parameters.stallThread = true;
+				} else if (currentArg.equals("--linearizable-size")) {
+					Parameters.linearizableSize = true;
+				} else if (currentArg.equals("--latency")) {
+					Parameters.measureLatency = true;
 				} else {
 					String optionValue = args[argNumber++];
 					if (currentArg.equals("--thread-nums")
@@ -347,6 +684,42 @@ public class Test {
 					else if (currentArg.equals("--snapshots")
 							|| currentArg.equals("-s"))
 						Parameters.numSnapshots = Integer.parseInt(optionValue);
+					else if (currentArg.equals("--range-queries")
+							|| currentArg.equals("-q"))
+						Parameters.numRangeQueries = Integer.parseInt(optionValue);
+					else if (currentArg.equals("--phases"))
+						Parameters.phasesFile = optionValue;
+					else if (currentArg.equals("--workload"))
+						Parameters.workload = optionValue;
+					else if (currentArg.equals("--distribution"))
+						Parameters.distribution = optionValue;
+					else if (currentArg.equals("--theta"))
+						Parameters.theta = Double.parseDouble(optionValue);
+					else if (currentArg.equals("--hot-ops"))
+						Parameters.hotOps = Integer.parseInt(optionValue);
+					else if (currentArg.equals("--hot-keys"))
+						Parameters.hotKeys = Integer.parseInt(optionValue);
+					else if (currentArg.equals("--seed")) {
+						Parameters.seed = Long.parseLong(optionValue);
+						Parameters.fixedSeed = true;
+					} else if (currentArg.equals("--record"))
+						Parameters.recordPath = optionValue;
+					else if (currentArg.equals("--replay"))
+						Parameters.replayPath = optionValue;
+					else if (currentArg.equals("--output"))
+						Parameters.outputFormat = optionValue;
+					else if (currentArg.equals("--output-file"))
+						Parameters.outputFile = optionValue;
+					else if (currentArg.equals("--sample-interval"))
+						Parameters.sampleInterval = Integer.parseInt(optionValue);
+					else if (currentArg.equals("--sample-file"))
+						Parameters.sampleFile = optionValue;
+					else if (currentArg.equals("--rate"))
+						Parameters.rate = Long.parseLong(optionValue);
+					else if (currentArg.equals("--batch-size"))
+						Parameters.batchSize = Integer.parseInt(optionValue);
+					else if (currentArg.equals("--scan-length"))
+						Parameters.scanLength = Integer.parseInt(optionValue);
 					else if (currentArg.equals("--size")
 							|| currentArg.equals("-i"))
 						Parameters.size = Integer.parseInt(optionValue);
@@ -362,6 +735,15 @@ public class Test {
 					else if (currentArg.equals("--iterations")
 							|| currentArg.equals("-n"))
 						Parameters.iterations = Integer.parseInt(optionValue);
+					else if (currentArg.equals("--lock")
+							|| currentArg.equals("-L"))
+						Parameters.lockName = optionValue;
+					else if (currentArg.equals("--sockets")
+							|| currentArg.equals("-S"))
+						Parameters.numSockets = Integer.parseInt(optionValue);
+					else if (currentArg.equals("--reclaim")
+							|| currentArg.equals("-R"))
+						Parameters.reclaimerName = optionValue;
 				}
 			} catch (IndexOutOfBoundsException e) {
 				System.err.println("Missing value after option: " + currentArg
@@ -425,9 +807,44 @@ public class Test {
 				+ "\t-a writeAll   -- set the percentage of composite updates (default: "
 				+ Parameters.numWriteAlls
 				+ ")\n"
+				+ "\t--phases file -- change the mix, the key distribution and the active threads at the offsets of the phases of the file\n"
+				+ "\t--workload w  -- run the YCSB core workload w of the map benchmarks instead of the operation mix, one of "
+				+ String.join("|", Workload.NAMES)
+				+ "\n"
+				+ "\t--distribution -- set the distribution of the operation keys, one of "
+				+ String.join("|", KeyGenerator.NAMES)
+				+ " (default: "
+				+ Parameters.distribution
+				+ ")\n"
+				+ "\t--theta       -- set the skew of the zipfian, scrambled and latest distributions (default: "
+				+ Parameters.theta
+				+ ")\n"
+				+ "\t--hot-ops     -- set the percentage of operations on the hot keys of the hotspot distribution (default: "
+				+ Parameters.hotOps
+				+ ")\n"
+				+ "\t--hot-keys    -- set the percentage of hot keys of the hotspot distribution (default: "
+				+ Parameters.hotKeys
+				+ ")\n"
+				+ "\t--seed seed   -- seed the random generators, so that each thread draws the same operations at each run (default: unseeded)\n"
+				+ "\t--record path -- write the operations of each thread of the integer set benchmark to the trace path.<thread>\n"
+				+ "\t--replay path -- run the operations of the traces path.<thread> instead of drawing them, until their end or the duration\n"
+				+ "\t--rate ops/s  -- run an open loop offering this total rate, timing the latencies from the intended starts (default: closed loop)\n"
+				+ "\t--output format -- also write the results of each iteration as a JSON line (json) or a CSV row (csv)\n"
+				+ "\t--output-file path -- append these results to this file instead of printing them\n"
+				+ "\t--sample-interval ms -- sample the throughput and the failures at this interval during the runs (default: 0, no samples)\n"
+				+ "\t--sample-file path   -- write the samples to this CSV file instead of printing them\n"
+				+ "\t--batch-size  -- set the number of keys of a composite update (default: "
+				+ Parameters.batchSize
+				+ ")\n"
 				+ "\t-s snapshot   -- set the percentage of composite read-only operations (default: "
 				+ Parameters.numSnapshots
 				+ ")\n"
+				+ "\t-q range-qrs  -- set the percentage of range queries (default: "
+				+ Parameters.numRangeQueries
+				+ ")\n"
+				+ "\t--scan-length -- set the key range of a range query (default: "
+				+ Parameters.scanLength
+				+ ")\n"
 				+ "\t-r range      -- set the element range (default: "
 				+ Parameters.range
 				+ ")\n"
@@ -441,10 +858,38 @@ public class Test {
 				+ Parameters.iterations
 				+ ")\n"
 				+ "\t-W warmup     -- set the JVM warmup length, in seconds (default: "
-				+ Parameters.warmUp + ").";
+				+ Parameters.warmUp
+				+ ")\n"
+				+ "\t-L lock       -- set the lock of the lock-based benchmarks, one of "
+				+ String.join("|", LockFactory.NAMES)
+				+ " (default: "
+				+ Parameters.lockName
+				+ ")\n"
+				+ "\t-S sockets    -- set the number of sockets of the cohort lock (default: "
+				+ CohortLock.getSockets() + ", from /sys)\n"
+				+ "\t-R reclaimer  -- set the memory reclaimer of the node-recycling benchmarks, one of "
+				+ String.join("|", ReclaimerFactory.NAMES)
+				+ " (default: "
+				+ Parameters.reclaimerName
+				+ ")\n"
+				+ "\t--stall       -- stall a thread inside an operation during the benchmark\n"
+				+ "\t--linearizable-size -- make size() exclude the updates on the structures with striped counters\n"
+				+ "\t--latency     -- measure the latency of each operation and report its percentiles.";
 		System.err.println(syntax);
 	}
 
+	private static String describeDistribution() {
+		String name = Parameters.distribution;
+		if (KeyGenerator.HOTSPOT.equals(name))
+			return name + " (" + Parameters.hotOps + " % of the operations on "
+					+ Parameters.hotKeys + " % of the keys)";
+		if (KeyGenerator.ZIPFIAN.equals(name)
+				|| KeyGenerator.SCRAMBLED.equals(name)
+				|| KeyGenerator.LATEST.equals(name))
+			return name + " (theta " + Parameters.theta + ")";
+		return name;
+	}
+
 	/**
 	 * Print the parameters that have been given as an input to the benchmark
 	 */
@@ -459,12 +904,44 @@ public class Test {
 				+ "  Duration:                \t"
 				+ Parameters.numMilliseconds
 				+ " ms\n"
+				+ "  Seed:                    \t"
+				+ (Parameters.fixedSeed ? Long.toString(Parameters.seed) : "none")
+				+ (Parameters.recordPath != null ? " (recording " + Parameters.recordPath + ".*)" : "")
+				+ (Parameters.replayPath != null ? " (replaying " + Parameters.replayPath + ".*)" : "")
+				+ "\n"
+				+ (Parameters.phasesFile != null ? "  Phases:                  \t"
+						+ Parameters.phasesFile + "\n" : "")
+				+ (Parameters.workload != null ? "  Workload:                \t"
+						+ Workload.forName(Parameters.workload) + "\n" : "")
+				+ "  Key distribution:        \t"
+				+ describeDistribution()
+				+ "\n"
+				+ "  Offered rate:            \t"
+				+ (Parameters.rate > 0 ? Parameters.rate + " ops/s (open loop)"
+						: "unlimited (closed loop)")
+				+ "\n"
+				+ (Parameters.outputFormat != null ? "  Output:                  \t"
+						+ Parameters.outputFormat
+						+ (Parameters.outputFile != null ? " (to "
+								+ Parameters.outputFile + ")" : "") + "\n" : "")
+				+ (Parameters.sampleInterval > 0 ? "  Sample interval:         \t"
+						+ Parameters.sampleInterval + " ms"
+						+ (Parameters.sampleFile != null ? " (to "
+								+ Parameters.sampleFile + ")" : "") + "\n" : "")
 				+ "  Write ratio:             \t"
 				+ Parameters.numWrites
 				+ " %\n"
+				+ "  WriteAll ratio:          \t"
+				+ Parameters.numWriteAlls
+				+ " % (" + Parameters.batchSize + " keys)\n"
 				+ "  Snapshot ratio:          \t"
 				+ Parameters.numSnapshots
-				+ " %\n"
+				+ " %"
+				+ (Parameters.linearizableSize ? " (linearizable size)" : "")
+				+ "\n"
+				+ "  Range query ratio:       \t"
+				+ Parameters.numRangeQueries
+				+ " % (" + Parameters.scanLength + " keys)\n"
 				+ "  Size:                    \t"
 				+ Parameters.size
 				+ " elements\n"
@@ -478,10 +955,173 @@ public class Test {
 				+ Parameters.iterations
 				+ "\n"
 				+ "  Benchmark:               \t"
-				+ Parameters.benchClassName;
+				+ Parameters.benchClassName
+				+ "\n"
+				+ "  Lock:                    \t"
+				+ Parameters.lockName
+				+ (LockFactory.COHORT.equals(Parameters.lockName) ? " ("
+						+ CohortLock.getSockets() + " sockets)" : "")
+				+ "\n"
+				+ "  Reclaimer:               \t"
+				+ Parameters.reclaimerName
+				+ (Parameters.stallThread ? " (with a stalled thread)" : "");
 		System.out.println(params);
 	}
 
+	private void addLatencies(LatencyHistogram[] threadLatencies) {
+		if (threadLatencies == null)
+			return;
+		for (int op = 0; op < latencies.length; op++)
+			latencies[op].add(threadLatencies[op]);
+	}
+
+	private static void resetLatencies(LatencyHistogram[] threadLatencies) {
+		if (threadLatencies == null)
+			return;
+		for (LatencyHistogram histogram : threadLatencies)
+			histogram.reset();
+	}
+
+	/**
+	 * Returns the size of the benchmark structure.
+	 */
+	private int benchSize() {
+		switch(benchType) {
+		case INTSET:
+			return setBench.size();
+		case MAP:
+			return mapBench.size();
+		case INTMAP:
+			return intMapBench.size();
+		default:
+			return sortedBench.size();
+		}
+	}
+
+	/**
+	 * Writes the parameters, the results of the iteration once printed and
+	 * the JVM as a machine-readable record (option --output).
+	 */
+	private void writeReport() {
+		Report report = new Report();
+		report.put("run", "benchmark", Parameters.benchClassName)
+				.put("run", "iteration", currentIteration + 1)
+				.put("run", "elapsed_s", elapsedTime)
+				.put("run", "throughput", throughput[currentIteration])
+				.put("run", "final_size", benchSize())
+				.put("run", "expected_size", Parameters.numWriteAlls == 0 ?
+						Long.valueOf(Parameters.size + numAdd - numRemove) : null);
+		report.put("params", "threads", Parameters.numThreads)
+				.put("params", "duration_ms", Parameters.numMilliseconds)
+				.put("params", "warmup_s", Parameters.warmUp)
+				.put("params", "iterations", Parameters.iterations)
+				.put("params", "size", Parameters.size)
+				.put("params", "range", Parameters.range)
+				.put("params", "updates", Parameters.numWrites)
+				.put("params", "write_alls", Parameters.numWriteAlls)
+				.put("params", "batch_size", Parameters.batchSize)
+				.put("params", "snapshots", Parameters.numSnapshots)
+				.put("params", "range_queries", Parameters.numRangeQueries)
+				.put("params", "scan_length", Parameters.scanLength)
+				.put("params", "distribution", Parameters.distribution)
+				.put("params", "theta", Parameters.theta)
+				.put("params", "workload", Parameters.workload)
+				.put("params", "phases", Parameters.phasesFile)
+				.put("params", "rate", Parameters.rate)
+				.put("params", "lock", Parameters.lockName)
+				.put("params", "reclaimer", Parameters.reclaimerName)
+				.put("params", "seed", Parameters.fixedSeed ?
+						Long.valueOf(Parameters.seed) : null);
+		report.put("ops", "total", total)
+				.put("ops", "add", numAdd)
+				.put("ops", "remove", numRemove)
+				.put("ops", "add_all", numAddAll)
+				.put("ops", "remove_all", numRemoveAll)
+				.put("ops", "update", numUpdate)
+				.put("ops", "size", numSize)
+				.put("ops", "contains", numContains)
+				.put("ops", "range_queries", numRangeQueries)
+				.put("ops", "keys_scanned", keysScanned)
+				.put("ops", "failures", failures)
+				.put("ops", "aborts", aborts);
+		// the same fields whether the latencies are measured or not
+		for (int op = 0; op < LatencyHistogram.OPERATIONS.length; op++) {
+			LatencyHistogram histogram = latencies[op];
+			boolean measured = histogram.getCount() > 0;
+			String name = LatencyHistogram.OPERATIONS[op].replace('-', '_');
+			report.put("latency_ns", name + "_p50",
+					measured ? Long.valueOf(histogram.getPercentile(50)) : null)
+					.put("latency_ns", name + "_p90",
+							measured ? Long.valueOf(histogram.getPercentile(90)) : null)
+					.put("latency_ns", name + "_p99",
+							measured ? Long.valueOf(histogram.getPercentile(99)) : null)
+					.put("latency_ns", name + "_p99_9",
+							measured ? Long.valueOf(histogram.getPercentile(99.9)) : null)
+					.put("latency_ns", name + "_max",
+							measured ? Long.valueOf(histogram.getMax()) : null);
+		}
+		report.put("jvm", "java_version", System.getProperty("java.version"))
+				.put("jvm", "vm_name", System.getProperty("java.vm.name"))
+				.put("jvm", "vm_version", System.getProperty("java.vm.version"))
+				.put("jvm", "processors", Runtime.getRuntime().availableProcessors());
+		try {
+			report.write(Parameters.outputFormat, Parameters.outputFile);
+		} catch (IOException e) {
+			System.err.println("Cannot write the results: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Print the throughput of each phase, from the operations counted by
+	 * the threads in each
+	 */
+	private void printPhases() {
+		System.out.println("  Phases (ops/s):           \toffset (ms)\tthroughput\tsettings");
+		for (int i = 0; i < runningPhases.size(); i++) {
+			long ops = 0;
+			for (int threadNum = 0; threadNum < Parameters.numThreads; threadNum++) {
+				switch (benchType) {
+				case INTSET:
+					ops += threadLoopsSet[threadNum].phaseOps[i];
+					break;
+				case MAP:
+					ops += threadLoops[threadNum].phaseOps[i];
+					break;
+				case INTMAP:
+					ops += threadLoopsIntMap[threadNum].phaseOps[i];
+					break;
+				default:
+					break;
+				}
+			}
+			long duration = runningPhases.duration(i, Parameters.numMilliseconds);
+			Phases.Phase phase = runningPhases.get(i);
+			System.out.println(String.format("%-27s", "    |--phase " + i + ":")
+					+ "\t" + phase.offset + "\t"
+					+ (duration == 0 ? "-" : formatDouble(ops * 1000.0 / duration))
+					+ "\t" + phase);
+		}
+	}
+
+	/**
+	 * Print the percentiles of the latencies of each operation
+	 */
+	private void printLatencies() {
+		System.out.println("  Latencies (ns):           \tp50\tp90\tp99\tp99.9\tmax");
+		for (int op = 0; op < latencies.length; op++) {
+			LatencyHistogram histogram = latencies[op];
+			if (histogram.getCount() == 0)
+				continue;
+			String name = "    |--" + LatencyHistogram.OPERATIONS[op] + ":";
+			System.out.println(String.format("%-27s", name) + "\t"
+					+ histogram.getPercentile(50) + "\t"
+					+ histogram.getPercentile(90) + "\t"
+					+ histogram.getPercentile(99) + "\t"
+					+ histogram.getPercentile(99.9) + "\t"
+					+ histogram.getMax());
+		}
+	}
+
 	/**
 	 * Print the statistics on the standard output
 	 */
@@ -495,12 +1135,18 @@ public class Test {
 				numRemoveAll += threadLoopsSet[threadNum].numRemoveAll;
 				numSize += threadLoopsSet[threadNum].numSize;
 				numContains += threadLoopsSet[threadNum].numContains;
+				numRangeQueries += threadLoopsSet[threadNum].numRangeQueries;
+				keysScanned += threadLoopsSet[threadNum].keysScanned;
+				snapshotNanos += threadLoopsSet[threadNum].snapshotNanos;
+				maxSnapshotNanos = Math.max(maxSnapshotNanos,
+						threadLoopsSet[threadNum].maxSnapshotNanos);
 				failures += threadLoopsSet[threadNum].failures;
 				total += threadLoopsSet[threadNum].total;
 				aborts += threadLoopsSet[threadNum].aborts;
 				getCount += threadLoopsSet[threadNum].getCount;
 				nodesTraversed += threadLoopsSet[threadNum].nodesTraversed;
 				structMods += threadLoopsSet[threadNum].structMods;
+				addLatencies(threadLoopsSet[threadNum].latencies);
 				break;
 			case MAP:
 				numAdd += threadLoops[threadNum].numAdd;
@@ -509,12 +1155,34 @@ public class Test {
 				numRemoveAll += threadLoops[threadNum].numRemoveAll;
 				numSize += threadLoops[threadNum].numSize;
 				numContains += threadLoops[threadNum].numContains;
+				numUpdate += threadLoops[threadNum].numUpdate;
+				numRangeQueries += threadLoops[threadNum].numRangeQueries;
+				keysScanned += threadLoops[threadNum].keysScanned;
 				failures += threadLoops[threadNum].failures;
 				total += threadLoops[threadNum].total;
 				aborts += threadLoops[threadNum].aborts;
 				getCount += threadLoops[threadNum].getCount;
 				nodesTraversed += threadLoops[threadNum].nodesTraversed;
 				structMods += threadLoops[threadNum].structMods;
+				addLatencies(threadLoops[threadNum].latencies);
+				break;
+			case INTMAP:
+				numAdd += threadLoopsIntMap[threadNum].numAdd;
+				numRemove += threadLoopsIntMap[threadNum].numRemove;
+				numAddAll += threadLoopsIntMap[threadNum].numAddAll;
+				numRemoveAll += threadLoopsIntMap[threadNum].numRemoveAll;
+				numSize += threadLoopsIntMap[threadNum].numSize;
+				numContains += threadLoopsIntMap[threadNum].numContains;
+				numUpdate += threadLoopsIntMap[threadNum].numUpdate;
+				numRangeQueries += threadLoopsIntMap[threadNum].numRangeQueries;
+				keysScanned += threadLoopsIntMap[threadNum].keysScanned;
+				failures += threadLoopsIntMap[threadNum].failures;
+				total += threadLoopsIntMap[threadNum].total;
+				aborts += threadLoopsIntMap[threadNum].aborts;
+				getCount += threadLoopsIntMap[threadNum].getCount;
+				nodesTraversed += threadLoopsIntMap[threadNum].nodesTraversed;
+				structMods += threadLoopsIntMap[threadNum].structMods;
+				addLatencies(threadLoopsIntMap[threadNum].latencies);
 				break;
 			case SORTEDSET:
 				numAdd += threadLoopsSSet[threadNum].numAdd;
@@ -529,6 +1197,7 @@ public class Test {
 				getCount += threadLoopsSSet[threadNum].getCount;
 				nodesTraversed += threadLoopsSSet[threadNum].nodesTraversed;
 				structMods += threadLoopsSSet[threadNum].structMods;
+				addLatencies(threadLoopsSSet[threadNum].latencies);
 				break;
 			}
 		}
@@ -542,10 +1211,10 @@ public class Test {
 				+ "\t( 100 %)");
 		System.out
 				.println("    effective updates:     \t"
-						+ (numAdd + numRemove + numAddAll + numRemoveAll)
+						+ (numAdd + numRemove + numAddAll + numRemoveAll + numUpdate)
 						+ "\t( "
 						+ formatDouble(((double) (numAdd + numRemove
-								+ numAddAll + numRemoveAll) * 100)
+								+ numAddAll + numRemoveAll + numUpdate) * 100)
 								/ (double) total) + " %)");
 		System.out.println("    |--add successful:     \t" + numAdd + "\t( "
 				+ formatDouble(((double) numAdd / (double) total) * 100)
@@ -553,9 +1222,28 @@ public class Test {
 		System.out.println("    |--remove succ.:       \t" + numRemove + "\t( "
 				+ formatDouble(((double) numRemove / (double) total) * 100)
 				+ " %)");
+		if (Parameters.numWriteAlls > 0) {
+			System.out.println("    |--addAll succ.:       \t" + numAddAll + "\t( "
+					+ formatDouble(((double) numAddAll / (double) total) * 100)
+					+ " %)");
+			System.out.println("    |--removeAll succ.:    \t" + numRemoveAll + "\t( "
+					+ formatDouble(((double) numRemoveAll / (double) total) * 100)
+					+ " %)");
+		}
+		if (numUpdate > 0) {
+			System.out.println("    |--update succ.:       \t" + numUpdate + "\t( "
+					+ formatDouble(((double) numUpdate / (double) total) * 100)
+					+ " %)");
+		}
 		System.out.println("    size successful:       \t" + numSize + "\t( "
 				+ formatDouble(((double) numSize / (double) total) * 100)
 				+ " %)");
+		if (numRangeQueries > 0) {
+			System.out.println("    range queries:         \t" + numRangeQueries
+					+ "\t( "
+					+ formatDouble(((double) numRangeQueries / (double) total) * 100)
+					+ " %)");
+		}
 		System.out.println("    contains succ.:        \t" + numContains
 				+ "\t( "
 				+ formatDouble(((double) numContains / (double) total) * 100)
@@ -563,6 +1251,24 @@ public class Test {
 		System.out.println("    unsuccessful ops:      \t" + failures + "\t( "
 				+ formatDouble(((double) failures / (double) total) * 100)
 				+ " %)");
+		if (numSize > 0 && setBench instanceof SnapshotAlg) {
+			System.out.println("  Snapshots (snaps/s):      \t"
+					+ formatDouble((double) numSize / elapsedTime));
+			System.out.println("  Snapshot duration (us):   \tavg "
+					+ formatDouble((double) snapshotNanos / numSize / 1000)
+					+ ", max "
+					+ formatDouble((double) maxSnapshotNanos / 1000));
+		}
+		if (Parameters.measureLatency)
+			printLatencies();
+		if (runningPhases != null)
+			printPhases();
+		if (numRangeQueries > 0) {
+			System.out.println("  Range queries (scans/s):  \t"
+					+ formatDouble((double) numRangeQueries / elapsedTime));
+			System.out.println("  Keys scanned (keys/s):    \t"
+					+ formatDouble((double) keysScanned / elapsedTime));
+		}
 		switch(benchType) {
 		case INTSET:
 			System.out.println("  Final size:              \t" + setBench.size());
@@ -572,6 +1278,10 @@ public class Test {
 			System.out.println("  Final size:              \t" + mapBench.size());
 			if (Parameters.numWriteAlls == 0) System.out.println("  Expected size:           \t" + (Parameters.size+numAdd-numRemove));
 			break;
+		case INTMAP:
+			System.out.println("  Final size:              \t" + intMapBench.size());
+			if (Parameters.numWriteAlls == 0) System.out.println("  Expected size:           \t" + (Parameters.size+numAdd-numRemove));
+			break;
 		case SORTEDSET:
 			System.out.println("  Final size:              \t" + sortedBench.size());
 			if (Parameters.numWriteAlls == 0) System.out.println("  Expected size:           \t" + (Parameters.size+numAdd-numRemove));
@@ -591,6 +1301,12 @@ public class Test {
 						+ ((MaintenanceAlg) mapBench).numNodes());
 			}
 			break;
+		case INTMAP:
+			if (intMapBench instanceof MaintenanceAlg) {
+				System.out.println("  #nodes (inc. deleted): \t"
+						+ ((MaintenanceAlg) intMapBench).numNodes());
+			}
+			break;
 		case SORTEDSET:
 			if (mapBench instanceof MaintenanceAlg) {
 				System.out.println("  #nodes (inc. deleted): \t"
@@ -599,6 +1315,18 @@ public class Test {
 			break;
 		}
 
+		if (LockFactory.COHORT.equals(Parameters.lockName)) {
+			long intra = CohortLock.getIntraSocketHandoffs();
+			long cross = CohortLock.getCrossSocketHandoffs();
+			System.out.println("  Lock handoffs:            \t" + (intra + cross)
+					+ "\t( 100 %)");
+			System.out.println("    |--within a socket:    \t" + intra + "\t( "
+					+ formatPercent(intra, intra + cross)
+					+ " %)");
+			System.out.println("    |--across sockets:     \t" + cross + "\t( "
+					+ formatPercent(cross, intra + cross)
+					+ " %)");
+		}
 	}
 
 	/**
@@ -646,12 +1374,17 @@ public class Test {
 			threadLoopsSet[threadNum].numRemoveAll = 0;
 			threadLoopsSet[threadNum].numSize = 0;
 			threadLoopsSet[threadNum].numContains = 0;
+			threadLoopsSet[threadNum].numRangeQueries = 0;
+			threadLoopsSet[threadNum].keysScanned = 0;
+			threadLoopsSet[threadNum].snapshotNanos = 0;
+			threadLoopsSet[threadNum].maxSnapshotNanos = 0;
 			threadLoopsSet[threadNum].failures = 0;
 			threadLoopsSet[threadNum].total = 0;
 			threadLoopsSet[threadNum].aborts = 0;
 			threadLoopsSet[threadNum].nodesTraversed = 0;
 			threadLoopsSet[threadNum].getCount = 0;
 			threadLoopsSet[threadNum].structMods = 0;
+			resetLatencies(threadLoopsSet[threadNum].latencies);
 			break;
 			case MAP:
 			threadLoops[threadNum].numAdd = 0;
@@ -660,12 +1393,34 @@ public class Test {
 			threadLoops[threadNum].numRemoveAll = 0;
 			threadLoops[threadNum].numSize = 0;
 			threadLoops[threadNum].numContains = 0;
+			threadLoops[threadNum].numUpdate = 0;
+			threadLoops[threadNum].numRangeQueries = 0;
+			threadLoops[threadNum].keysScanned = 0;
 			threadLoops[threadNum].failures = 0;
 			threadLoops[threadNum].total = 0;
 			threadLoops[threadNum].aborts = 0;
 			threadLoops[threadNum].nodesTraversed = 0;
 			threadLoops[threadNum].getCount = 0;
 			threadLoops[threadNum].structMods = 0;
+			resetLatencies(threadLoops[threadNum].latencies);
+			break;
+			case INTMAP:
+			threadLoopsIntMap[threadNum].numAdd = 0;
+			threadLoopsIntMap[threadNum].numRemove = 0;
+			threadLoopsIntMap[threadNum].numAddAll = 0;
+			threadLoopsIntMap[threadNum].numRemoveAll = 0;
+			threadLoopsIntMap[threadNum].numSize = 0;
+			threadLoopsIntMap[threadNum].numContains = 0;
+			threadLoopsIntMap[threadNum].numUpdate = 0;
+			threadLoopsIntMap[threadNum].numRangeQueries = 0;
+			threadLoopsIntMap[threadNum].keysScanned = 0;
+			threadLoopsIntMap[threadNum].failures = 0;
+			threadLoopsIntMap[threadNum].total = 0;
+			threadLoopsIntMap[threadNum].aborts = 0;
+			threadLoopsIntMap[threadNum].nodesTraversed = 0;
+			threadLoopsIntMap[threadNum].getCount = 0;
+			threadLoopsIntMap[threadNum].structMods = 0;
+			resetLatencies(threadLoopsIntMap[threadNum].latencies);
 			break;
 			case SORTEDSET:
 			threadLoopsSSet[threadNum].numAdd = 0;
@@ -680,16 +1435,23 @@ public class Test {
 			threadLoopsSSet[threadNum].nodesTraversed = 0;
 			threadLoopsSSet[threadNum].getCount = 0;
 			threadLoopsSSet[threadNum].structMods = 0;
+			resetLatencies(threadLoopsSSet[threadNum].latencies);
 			break;
 			}
 
 		}
+		resetLatencies(latencies);
 		numAdd = 0;
 		numRemove = 0;
 		numAddAll = 0;
 		numRemoveAll = 0;
 		numSize = 0;
 		numContains = 0;
+		numUpdate = 0;
+		numRangeQueries = 0;
+		keysScanned = 0;
+		snapshotNanos = 0;
+		maxSnapshotNanos = 0;
 		failures = 0;
 		total = 0;
 		aborts = 0;
@@ -722,6 +1484,9 @@ public class Test {
 		txDurationSum = 0;
 		elasticReads = 0;
 		readsInROPrefix = 0;
+
+		if (getReclaimer() != null)
+			getReclaimer().resetStats();
 	}
 
 	public void recordPreliminaryStats() {
@@ -901,6 +1666,41 @@ public class Test {
 		System.out.println("  Number of elastic reads       " + elasticReads);
 		System.out
 				.println("  Number of reads in RO prefix  " + readsInROPrefix);
+
+		MemoryReclaimer<?> reclaimer = getReclaimer();
+		if (reclaimer != null) {
+			printLine('-');
+			System.out.println("Memory reclamation statistics");
+			printLine('-');
+			System.out.println("  Reclaimer:                \t" + reclaimer.getName());
+			System.out.println("  Retired nodes:            \t" + reclaimer.getRetired());
+			System.out.println("  Reclaimed nodes:          \t" + reclaimer.getReclaimed());
+			System.out.println("  Recycled nodes:           \t" + reclaimer.getRecycled());
+			System.out.println("  Pooled nodes:             \t" + reclaimer.getPooled());
+			System.out.println("  Peak unreclaimed nodes:   \t" + reclaimer.getPeakUnreclaimed());
+		}
+	}
+
+	/**
+	 * Returns the memory reclaimer of the benchmark, if it recycles its
+	 * nodes
+	 */
+	private MemoryReclaimer<?> getReclaimer() {
+		ReclamationAlg bench = getReclamationAlg();
+		return bench == null ? null : bench.getReclaimer();
+	}
+
+	/**
+	 * Returns the benchmark, if it recycles its nodes
+	 */
+	private ReclamationAlg getReclamationAlg() {
+		if (setBench instanceof ReclamationAlg)
+			return (ReclamationAlg) setBench;
+		if (mapBench instanceof ReclamationAlg)
+			return (ReclamationAlg) mapBench;
+		if (sortedBench instanceof ReclamationAlg)
+			return (ReclamationAlg) sortedBench;
+		return null;
 	}
 
 	/**
@@ -938,4 +1738,11 @@ public class Test {
 		Formatter formatter = new Formatter(Locale.US);
 		return formatter.format("%.2f", result).out().toString();
 	}
+
+	/**
+	 * Formats the percentage of a part of a whole, 0 if the whole is empty.
+	 */
+	private static String formatPercent(long part, long whole) {
+		return formatDouble(whole == 0 ? 0 : ((double) part / (double) whole) * 100);
+	}
 }
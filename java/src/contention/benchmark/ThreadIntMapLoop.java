@@ -0,0 +1,205 @@
+package contention.benchmark;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import contention.abstractions.CompositionalIntIntMap;
+import contention.abstractions.CompositionalMap;
+import contention.abstractions.CompositionalRangeQuery;
+
+/**
+ * The loop executed by each thread of the int-to-int map benchmark. Keys
+ * and values stay primitive, so unlike ThreadLoop it neither boxes them
+ * nor allocates a batch map per writeAll operation.
+ * 
+ */
+public class ThreadIntMapLoop extends AbstractThreadLoop {
+
+	/** The instance of the running benchmark */
+	public CompositionalIntIntMap bench;
+	/** The stop flag, indicating whether the loop is over */
+	protected volatile boolean stop = false;
+	/** The pool of methods that can run */
+	protected Method[] methods;
+
+	/** The counters of the thread successful operations */
+	public long numAdd = 0;
+	public long numRemove = 0;
+	public long numAddAll = 0;
+	public long numRemoveAll = 0;
+	public long numSize = 0;
+	public long numContains = 0;
+	public long numUpdate = 0;
+	public long numRangeQueries = 0;
+	/** The counter of the keys returned by the scans */
+	public long keysScanned = 0;
+	/** The counter of aborts */
+	public long aborts = 0;
+	/** The YCSB workload run instead of the operation mix, if any */
+	private final Workload workload = (Parameters.workload == null) ? null
+			: Workload.forName(Parameters.workload);
+	/** The instance of the benchmark, if it supports scans */
+	protected CompositionalRangeQuery rangeBench;
+	/** The keys of the writeAll operations, reused across batches */
+	private final int[] batch = new int[Parameters.batchSize];
+
+	public long getCount;
+	public long nodesTraversed;
+	public long structMods;
+
+	public ThreadIntMapLoop(short myThreadNum, CompositionalIntIntMap bench,
+			Method[] methods, AtomicInteger latestKey) {
+		super(myThreadNum, latestKey);
+		this.bench = bench;
+		this.methods = methods;
+		if (bench instanceof CompositionalRangeQuery)
+			rangeBench = (CompositionalRangeQuery) bench;
+	}
+
+	public void stopThread() {
+		stop = true;
+	}
+
+	public void printDataStructure() {
+		System.out.println(bench.toString());
+	}
+
+	public void run() {
+
+		while (!stop) {
+			if (!activeInPhase())
+				continue;
+			int newInt = keys.nextKey();
+			int coin = rand.nextInt(1000);
+			int op = -1;
+			long start = startOperation();
+			if (workload != null) { // 0. should we run a YCSB operation?
+
+				op = runWorkload(workload.nextOp(coin), newInt);
+
+			} else if (coin < cdf[0]) { // 1. should we run a writeAll operation?
+
+				// a batch of random keys, half of the time added
+				batch[0] = newInt;
+				for (int i = 1; i < batch.length; i++)
+					batch[i] = keys.nextKey();
+
+				if (2 * coin < cdf[0]) {
+					boolean changed = false;
+					for (int key : batch)
+						changed |= bench.putIfAbsentInt(key, key) == CompositionalIntIntMap.NO_VALUE;
+					if (changed)
+						numAddAll++;
+					else
+						failures++;
+				} else {
+					boolean changed = false;
+					for (int key : batch)
+						changed |= bench.removeInt(key) != CompositionalIntIntMap.NO_VALUE;
+					if (changed)
+						numRemoveAll++;
+					else
+						failures++;
+				}
+
+			} else if (coin < cdf[1]) { // 2. should we run a writeSome
+										// operation?
+
+				if (2 * (coin - cdf[0]) < cdf[1] - cdf[0]) { // add
+					op = LatencyHistogram.ADD;
+					if (bench.putIfAbsentInt(newInt, newInt) == CompositionalIntIntMap.NO_VALUE) {
+						numAdd++;
+						keys.added(newInt);
+					} else {
+						failures++;
+					}
+				} else { // remove
+					op = LatencyHistogram.REMOVE;
+					if (bench.removeInt(newInt) != CompositionalIntIntMap.NO_VALUE) {
+						numRemove++;
+					} else
+						failures++;
+				}
+
+			} else if (coin < cdf[2]) { // 3. should we run a readAll operation?
+				op = LatencyHistogram.SIZE;
+
+				bench.size();
+				numSize++;
+
+			} else { // 4. then we should run a readSome operation
+				op = LatencyHistogram.CONTAINS;
+
+				if (bench.getInt(newInt) != CompositionalIntIntMap.NO_VALUE)
+					numContains++;
+				else
+					failures++;
+			}
+			total++;
+			if (sampled)
+				publish();
+			if (op >= 0 && latencies != null)
+				latencies[op].record(System.nanoTime() - start);
+
+			assert total == failures + numContains + numSize + numRemove
+					+ numAdd + numRemoveAll + numAddAll + numUpdate
+					+ numRangeQueries;
+		}
+		this.getCount = CompositionalMap.counts.get().getCount;
+		this.nodesTraversed = CompositionalMap.counts.get().nodesTraversed;
+		this.structMods = CompositionalMap.counts.get().structMods;
+	}
+
+	/**
+	 * Runs an operation of the YCSB workload. The updates write a random
+	 * value and count as additions when the key was missing, as the
+	 * inserts do, so that the expected size still holds.
+	 * @return the operation whose latency is measured
+	 */
+	private int runWorkload(int ycsbOp, int key) {
+		int value;
+		switch (ycsbOp) {
+		case Workload.UPDATE:
+			value = rand.nextInt(Integer.MAX_VALUE);
+			if (bench.putInt(key, value) == CompositionalIntIntMap.NO_VALUE) {
+				numAdd++;
+				keys.added(key);
+			} else
+				numUpdate++;
+			return LatencyHistogram.UPDATE;
+		case Workload.INSERT:
+			if (bench.putIfAbsentInt(key, key) == CompositionalIntIntMap.NO_VALUE) {
+				numAdd++;
+				keys.added(key);
+			} else
+				failures++;
+			return LatencyHistogram.ADD;
+		case Workload.SCAN:
+			int length = 1 + rand.nextInt(Parameters.scanLength);
+			int hi = (int) Math.min((long) key + length, Integer.MAX_VALUE);
+			keysScanned += rangeBench.rangeScan(key, hi).length;
+			numRangeQueries++;
+			return LatencyHistogram.SCAN;
+		case Workload.READ_MODIFY_WRITE:
+			value = bench.getInt(key);
+			if (value == CompositionalIntIntMap.NO_VALUE) {
+				failures++;
+			} else {
+				value = (value == Integer.MAX_VALUE) ? 0 : value + 1;
+				if (bench.putInt(key, value) == CompositionalIntIntMap.NO_VALUE) {
+					// removed since read
+					numAdd++;
+					keys.added(key);
+				} else
+					numUpdate++;
+			}
+			return LatencyHistogram.READ_MODIFY_WRITE;
+		default:
+			if (bench.getInt(key) != CompositionalIntIntMap.NO_VALUE)
+				numContains++;
+			else
+				failures++;
+			return LatencyHistogram.CONTAINS;
+		}
+	}
+}
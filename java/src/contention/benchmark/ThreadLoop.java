@@ -3,11 +3,11 @@ package contention.benchmark;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
-import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import contention.abstractions.CompositionalMap;
+import contention.abstractions.CompositionalRangeQuery;
 
 /**
  * The loop executed by each thread of the map 
@@ -16,7 +16,7 @@ import contention.abstractions.CompositionalMap;
  * @author Vincent Gramoli
  * 
  */
-public class ThreadLoop implements Runnable {
+public class ThreadLoop extends AbstractThreadLoop {
 
 	/** The instance of the running benchmark */
 	public CompositionalMap<Integer, Integer> bench;
@@ -24,8 +24,6 @@ public class ThreadLoop implements Runnable {
 	protected volatile boolean stop = false;
 	/** The pool of methods that can run */
 	protected Method[] methods;
-	/** The number of the current thread */
-	protected final short myThreadNum;
 
 	/** The counters of the thread successful operations */
 	public long numAdd = 0;
@@ -34,38 +32,32 @@ public class ThreadLoop implements Runnable {
 	public long numRemoveAll = 0;
 	public long numSize = 0;
 	public long numContains = 0;
-	/** The counter of the false-returning operations */
-	public long failures = 0;
-	/** The counter of the thread operations */
-	public long total = 0;
+	public long numUpdate = 0;
+	public long numRangeQueries = 0;
+	/** The counter of the keys returned by the scans */
+	public long keysScanned = 0;
 	/** The counter of aborts */
 	public long aborts = 0;
-	/** The random number */
-	Random rand = new Random();
+	/** The YCSB workload run instead of the operation mix, if any */
+	private final Workload workload = (Parameters.workload == null) ? null
+			: Workload.forName(Parameters.workload);
+	/** The instance of the benchmark, if it supports scans */
+	protected CompositionalRangeQuery rangeBench;
+	/** The mappings of the writeAll operations, reused across batches */
+	private final Map<Integer, Integer> batch = new HashMap<Integer, Integer>();
 
 	public long getCount;
 	public long nodesTraversed;
 	public long structMods;
 
-	/**
-	 * The distribution of methods as an array of percentiles
-	 * 
-	 * 0%        cdf[0]        cdf[2]                     100%
-	 * |--writeAll--|--writeSome--|--readAll--|--readSome--|
-	 * |-----------write----------|--readAll--|--readSome--| cdf[1]
-	 */
-	int[] cdf = new int[3];
-
 	public ThreadLoop(short myThreadNum,
-			CompositionalMap<Integer, Integer> bench, Method[] methods) {
-		this.myThreadNum = myThreadNum;
+			CompositionalMap<Integer, Integer> bench, Method[] methods,
+			AtomicInteger latestKey) {
+		super(myThreadNum, latestKey);
 		this.bench = bench;
 		this.methods = methods;
-		/* initialize the method boundaries */
-		assert (Parameters.numWrites >= Parameters.numWriteAlls);
-		cdf[0] = 10 * Parameters.numWriteAlls;
-		cdf[1] = 10 * Parameters.numWrites;
-		cdf[2] = cdf[1] + 10 * Parameters.numSnapshots;
+		if (bench instanceof CompositionalRangeQuery)
+			rangeBench = (CompositionalRangeQuery) bench;
 	}
 
 	public void stopThread() {
@@ -79,56 +71,88 @@ public class ThreadLoop implements Runnable {
 	public void run() {
 
 		while (!stop) {
-			Integer newInt = rand.nextInt(Parameters.range);
+			if (!activeInPhase())
+				continue;
+			int newInt = keys.nextKey();
 			Integer a, b;
 			int coin = rand.nextInt(1000);
-			if (coin < cdf[0]) { // 1. should we run a writeAll operation?
+			int op = -1;
+			long start = startOperation();
+			if (workload != null) { // 0. should we run a YCSB operation?
+
+				op = runWorkload(workload.nextOp(coin), newInt);
 
-				// init a collection
-				Map<Integer, Integer> hm = new HashMap<Integer, Integer>(newInt, newInt);
-				hm.put(newInt / 2, newInt / 2); // accepts duplicate
+			} else if (coin < cdf[0]) { // 1. should we run a writeAll operation?
+
+				// a batch of random keys, half of the time added
+				batch.clear();
+				batch.put(newInt, newInt);
+				for (int i = 1; i < Parameters.batchSize; i++) {
+					int key = keys.nextKey();
+					batch.put(key, key);
+				}
 
 				try {
-					if (bench.keySet().removeAll(hm.keySet()))
-						numRemoveAll++; 
-					else failures++; 
+					if (2 * coin < cdf[0]) {
+						// putAll tells nothing, so the keys are put one by
+						// one to know whether the map changed
+						boolean changed = false;
+						for (Integer key : batch.keySet())
+							changed |= bench.putIfAbsent(key, key) == null;
+						if (changed)
+							numAddAll++;
+						else
+							failures++;
+					} else if (bench.keySet().removeAll(batch.keySet()))
+						numRemoveAll++;
+					else
+						failures++;
 				} catch (Exception e) {
 					System.err.println("Unsupported writeAll operations! Leave the default value of the numWriteAlls parameter (0).");
 				}
-				 
 
 			} else if (coin < cdf[1]) { // 2. should we run a writeSome
 										// operation?
 
-				if (true || 2 * (coin - cdf[0]) < cdf[1] - cdf[0]) { // add
-					if ((a = bench.putIfAbsent((int) newInt, (int) newInt)) == null) {
+				if (2 * (coin - cdf[0]) < cdf[1] - cdf[0]) { // add
+					op = LatencyHistogram.ADD;
+					if ((a = bench.putIfAbsent(newInt, newInt)) == null) {
 						numAdd++;
+						keys.added(newInt);
 					} else {
 						failures++;
 					}
 				} else { // remove
-					if ((a = bench.remove((int) newInt)) != null) {
+					op = LatencyHistogram.REMOVE;
+					if ((a = bench.remove(newInt)) != null) {
 						numRemove++;
 					} else
 						failures++;
 				}
 
 			} else if (coin < cdf[2]) { // 3. should we run a readAll operation?
+				op = LatencyHistogram.SIZE;
 
 				bench.size();
 				numSize++;
 
 			} else { // 4. then we should run a readSome operation
+				op = LatencyHistogram.CONTAINS;
 
-				if (bench.get((int) newInt) != null)
+				if (bench.get(newInt) != null)
 					numContains++;
 				else
 					failures++;
 			}
 			total++;
+			if (sampled)
+				publish();
+			if (op >= 0 && latencies != null)
+				latencies[op].record(System.nanoTime() - start);
 
 			assert total == failures + numContains + numSize + numRemove
-					+ numAdd + numRemoveAll + numAddAll;
+					+ numAdd + numRemoveAll + numAddAll + numUpdate
+					+ numRangeQueries;
 		}
 		// System.out.println(numAdd + " " + numRemove + " " + failures);
 		this.getCount = CompositionalMap.counts.get().getCount;
@@ -136,4 +160,57 @@ public class ThreadLoop implements Runnable {
 		this.structMods = CompositionalMap.counts.get().structMods;
 		System.out.println("Thread #" + myThreadNum + " finished.");
 	}
+
+	/**
+	 * Runs an operation of the YCSB workload. The updates write a random
+	 * value and count as additions when the key was missing, as the
+	 * inserts do, so that the expected size still holds.
+	 * @return the operation whose latency is measured
+	 */
+	private int runWorkload(int ycsbOp, int key) {
+		Integer value;
+		switch (ycsbOp) {
+		case Workload.UPDATE:
+			value = rand.nextInt(Integer.MAX_VALUE);
+			if (bench.put(key, value) == null) {
+				numAdd++;
+				keys.added(key);
+			} else
+				numUpdate++;
+			return LatencyHistogram.UPDATE;
+		case Workload.INSERT:
+			if (bench.putIfAbsent(key, key) == null) {
+				numAdd++;
+				keys.added(key);
+			} else
+				failures++;
+			return LatencyHistogram.ADD;
+		case Workload.SCAN:
+			int length = 1 + rand.nextInt(Parameters.scanLength);
+			int hi = (int) Math.min((long) key + length, Integer.MAX_VALUE);
+			keysScanned += rangeBench.rangeScan(key, hi).length;
+			numRangeQueries++;
+			return LatencyHistogram.SCAN;
+		case Workload.READ_MODIFY_WRITE:
+			value = bench.get(key);
+			if (value == null) {
+				failures++;
+			} else {
+				value = (value == Integer.MAX_VALUE) ? 0 : value + 1;
+				if (bench.put(key, value) == null) {
+					// removed since read
+					numAdd++;
+					keys.added(key);
+				} else
+					numUpdate++;
+			}
+			return LatencyHistogram.READ_MODIFY_WRITE;
+		default:
+			if (bench.get(key) != null)
+				numContains++;
+			else
+				failures++;
+			return LatencyHistogram.CONTAINS;
+		}
+	}
 }
@@ -1,13 +1,17 @@
 package contention.benchmark;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
-import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import contention.abstractions.CompositionalIntSet;
+import contention.abstractions.CompositionalIterator;
 import contention.abstractions.CompositionalMap;
+import contention.abstractions.CompositionalRangeQuery;
+import contention.abstractions.SnapshotAlg;
 
 /**
  * The loop executed by each thread of the integer set 
@@ -16,16 +20,18 @@ import contention.abstractions.CompositionalMap;
  * @author Vincent Gramoli
  * 
  */
-public class ThreadSetLoop implements Runnable {
+public class ThreadSetLoop extends AbstractThreadLoop {
 
 	/** The instance of the running benchmark */
 	public CompositionalIntSet bench;
+	/** The same instance, if it supports range queries */
+	protected CompositionalRangeQuery rangeBench;
+	/** The same instance, if it iterates over snapshots */
+	protected SnapshotAlg snapshotBench;
 	/** The stop flag, indicating whether the loop is over */
 	protected volatile boolean stop = false;
 	/** The pool of methods that can run */
 	protected Method[] methods;
-	/** The number of the current thread */
-	protected final short myThreadNum;
 
 	/** The counters of the thread successful operations */
 	public long numAdd = 0;
@@ -34,37 +40,34 @@ public class ThreadSetLoop implements Runnable {
 	public long numRemoveAll = 0;
 	public long numSize = 0;
 	public long numContains = 0;
-	/** The counter of the false-returning operations */
-	public long failures = 0;
-	/** The counter of the thread operations */
-	public long total = 0;
+	public long numRangeQueries = 0;
+	/** The counter of the keys returned by range queries */
+	public long keysScanned = 0;
+	/** The total and longest durations of the snapshot iterations */
+	public long snapshotNanos = 0;
+	public long maxSnapshotNanos = 0;
 	/** The counter of aborts */
 	public long aborts = 0;
-	/** The random number */
-	Random rand = new Random();
+	/** The trace the operations are written to, if they are recorded */
+	private TraceWriter recorder;
+	/** The trace the operations are read from, if they are replayed */
+	private TraceReader replayer;
+	/** The keys of the writeAll operations, reused across batches */
+	private final ArrayList<Integer> batch = new ArrayList<Integer>();
 
 	public long getCount;
 	public long nodesTraversed;
 	public long structMods;
 
-	/**
-	 * The distribution of methods as an array of percentiles
-	 * 
-	 * 0%        cdf[0]        cdf[2]                     100%
-	 * |--writeAll--|--writeSome--|--readAll--|--readSome--|
-	 * |-----------write----------|--readAll--|--readSome--| cdf[1]
-	 */
-	int[] cdf = new int[3];
-
-	public ThreadSetLoop(short myThreadNum, CompositionalIntSet bench, Method[] methods) {
-		this.myThreadNum = myThreadNum;
+	public ThreadSetLoop(short myThreadNum, CompositionalIntSet bench, Method[] methods,
+			AtomicInteger latestKey) {
+		super(myThreadNum, latestKey);
 		this.bench = bench;
 		this.methods = methods;
-		/* initialize the method boundaries */
-		assert (Parameters.numWrites >= Parameters.numWriteAlls);
-		cdf[0] = 10 * Parameters.numWriteAlls;
-		cdf[1] = 10 * Parameters.numWrites;
-		cdf[2] = cdf[1] + 10 * Parameters.numSnapshots;
+		if (bench instanceof CompositionalRangeQuery)
+			rangeBench = (CompositionalRangeQuery) bench;
+		if (bench instanceof SnapshotAlg)
+			snapshotBench = (SnapshotAlg) bench;
 	}
 
 	public void stopThread() {
@@ -75,59 +78,172 @@ public class ThreadSetLoop implements Runnable {
 		System.out.println(bench.toString());
 	}
 
-	public void run() {
+	/**
+	 * Records the operations of the thread into a trace.
+	 */
+	public void record(TraceWriter recorder) {
+		this.recorder = recorder;
+	}
 
-		while (!stop) {
-			Integer newInt = rand.nextInt(Parameters.range);
-			int coin = rand.nextInt(1000);
-			if (coin < cdf[0]) { // 1. should we run a writeAll operation?
-
-				// init a collection
-				Vector<Integer> vec = new Vector<Integer>(newInt);
-				vec.add(newInt / 2); // accepts duplicate
-
-				try {
-				  if (bench.removeAll(vec))
-					  numRemoveAll++; 
-				  else failures++; 
-				} catch (Exception e) {
-					System.err.println("Unsupported writeAll operations! Leave the default value of the numWriteAlls parameter (0).");
-				}
+	/**
+	 * Replays the operations of a trace instead of drawing them, until the
+	 * end of the trace.
+	 */
+	public void replay(TraceReader replayer) {
+		this.replayer = replayer;
+	}
 
-			} else if (coin < cdf[1]) { // 2. should we run a writeSome
-										// operation?
+	public void run() {
 
-				if ( 2 * (coin - cdf[0]) < cdf[1] - cdf[0]) { // add
-					if (bench.addInt((int) newInt)) {
+		try {
+			while (!stop) {
+				if (!activeInPhase())
+					continue;
+				byte op;
+				int newInt;
+				int hi = 0;
+				if (replayer != null) {
+					if (!replayer.next(batch))
+						break;
+					op = replayer.op;
+					newInt = replayer.key;
+					hi = replayer.hi;
+				} else {
+					newInt = keys.nextKey();
+					int coin = rand.nextInt(1000);
+					if (coin < cdf[0]) { // 1. should we run a writeAll operation?
+
+						// a batch of random keys, half of the time added
+						batch.clear();
+						batch.add(newInt);
+						for (int i = 1; i < Parameters.batchSize; i++)
+							batch.add(keys.nextKey());
+						op = (2 * coin < cdf[0]) ? Trace.ADD_ALL : Trace.REMOVE_ALL;
+
+					} else if (coin < cdf[1]) { // 2. should we run a writeSome
+												// operation?
+						op = (2 * (coin - cdf[0]) < cdf[1] - cdf[0]) ? Trace.ADD
+								: Trace.REMOVE;
+
+					} else if (coin < cdf[2]) { // 3. should we run a readAll operation?
+						op = Trace.SIZE;
+
+					} else if (coin < cdf[3]) { // 4. should we run a range query?
+						op = Trace.RANGE;
+						hi = (int) Math.min((long) newInt + Parameters.scanLength,
+								Integer.MAX_VALUE);
+
+					} else { // 5. then we should run a readSome operation
+						op = Trace.CONTAINS;
+					}
+				}
+				if (recorder != null)
+					record(op, newInt, hi);
+
+				long start = startOperation();
+				switch (op) {
+				case Trace.ADD_ALL:
+					if (bench.addAll(batch))
+						numAddAll++;
+					else
+						failures++;
+					break;
+				case Trace.REMOVE_ALL:
+					if (bench.removeAll(batch))
+						numRemoveAll++;
+					else
+						failures++;
+					break;
+				case Trace.ADD:
+					if (bench.addInt(newInt)) {
 						numAdd++;
+						keys.added(newInt);
+					} else
+						failures++;
+					break;
+				case Trace.REMOVE:
+					if (bench.removeInt(newInt))
+						numRemove++;
+					else
+						failures++;
+					break;
+				case Trace.SIZE:
+					if (snapshotBench != null) {
+						long snapshotStart = System.nanoTime();
+						CompositionalIterator<Integer> iterator = snapshotBench
+								.snapshotIterator();
+						while (iterator.hasNext())
+							iterator.next();
+						long duration = System.nanoTime() - snapshotStart;
+						snapshotNanos += duration;
+						if (duration > maxSnapshotNanos)
+							maxSnapshotNanos = duration;
 					} else {
+						bench.size();
+					}
+					numSize++;
+					break;
+				case Trace.RANGE:
+					// a replayed range query on a set without them fails
+					if (rangeBench == null) {
 						failures++;
+						break;
 					}
-				} else { // remove
-					if (bench.removeInt((int) newInt)) {
-						numRemove++;
-					} else
+					keysScanned += rangeBench.rangeScan(newInt, hi).length;
+					numRangeQueries++;
+					break;
+				default:
+					if (bench.containsInt(newInt))
+						numContains++;
+					else
 						failures++;
 				}
-
-			} else if (coin < cdf[2]) { // 3. should we run a readAll operation?
-				bench.size();
-				numSize++;
-
-			} else { // 4. then we should run a readSome operation
-
-				if (bench.containsInt((int) newInt))
-					numContains++;
-				else
-					failures++;
+				total++;
+				if (sampled)
+					publish();
+				if (latencies != null && op <= Trace.SIZE)
+					latencies[op].record(System.nanoTime() - start);
+
+				assert total == failures + numContains + numSize + numRemove
+						+ numAdd + numRemoveAll + numAddAll + numRangeQueries;
 			}
-			total++;
-
-			assert total == failures + numContains + numSize + numRemove
-					+ numAdd + numRemoveAll + numAddAll;
+		} catch (IOException e) {
+			System.err.println("Thread #" + myThreadNum
+					+ " cannot use its trace: " + e.getMessage());
+		} finally {
+			closeTraces();
 		}
 		this.getCount = CompositionalMap.counts.get().getCount;
 		this.nodesTraversed = CompositionalMap.counts.get().nodesTraversed;
 		this.structMods = CompositionalMap.counts.get().structMods;
 	}
+
+	private void record(byte op, int key, int hi) throws IOException {
+		switch (op) {
+		case Trace.ADD_ALL:
+		case Trace.REMOVE_ALL:
+			recorder.writeAll(op, batch);
+			break;
+		case Trace.SIZE:
+			recorder.writeSize();
+			break;
+		case Trace.RANGE:
+			recorder.writeRange(key, hi);
+			break;
+		default:
+			recorder.write(op, key);
+		}
+	}
+
+	private void closeTraces() {
+		try {
+			if (recorder != null)
+				recorder.close();
+			if (replayer != null)
+				replayer.close();
+		} catch (IOException e) {
+			System.err.println("Thread #" + myThreadNum
+					+ " cannot close its trace: " + e.getMessage());
+		}
+	}
 }
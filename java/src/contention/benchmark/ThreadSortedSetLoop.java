@@ -1,8 +1,8 @@
 package contention.benchmark;
 
 import java.lang.reflect.Method;
-import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import contention.abstractions.CompositionalMap;
 import contention.abstractions.CompositionalSortedSet;
@@ -14,7 +14,7 @@ import contention.abstractions.CompositionalSortedSet;
  * @author Vincent Gramoli
  * 
  */
-public class ThreadSortedSetLoop implements Runnable {
+public class ThreadSortedSetLoop extends AbstractThreadLoop {
 
 	/** The instance of the running benchmark */
 	public CompositionalSortedSet<Integer> bench;
@@ -22,8 +22,6 @@ public class ThreadSortedSetLoop implements Runnable {
 	protected volatile boolean stop = false;
 	/** The pool of methods that can run */
 	protected Method[] methods;
-	/** The number of the current thread */
-	protected final short myThreadNum;
 
 	/** The counters of the thread successful operations */
 	public long numAdd = 0;
@@ -32,37 +30,18 @@ public class ThreadSortedSetLoop implements Runnable {
 	public long numRemoveAll = 0;
 	public long numSize = 0;
 	public long numContains = 0;
-	/** The counter of the false-returning operations */
-	public long failures = 0;
-	/** The counter of the thread operations */
-	public long total = 0;
 	/** The counter of aborts */
 	public long aborts = 0;
-	/** The random number */
-	Random rand = new Random();
 
 	public long getCount;
 	public long nodesTraversed;
 	public long structMods;
 
-	/**
-	 * The distribution of methods as an array of percentiles
-	 * 
-	 * 0%        cdf[0]        cdf[2]                     100%
-	 * |--writeAll--|--writeSome--|--readAll--|--readSome--|
-	 * |-----------write----------|--readAll--|--readSome--| cdf[1]
-	 */
-	int[] cdf = new int[3];
-
-	public ThreadSortedSetLoop(short myThreadNum, CompositionalSortedSet<Integer> bench, Method[] methods) {
-		this.myThreadNum = myThreadNum;
+	public ThreadSortedSetLoop(short myThreadNum, CompositionalSortedSet<Integer> bench, Method[] methods,
+			AtomicInteger latestKey) {
+		super(myThreadNum, latestKey);
 		this.bench = bench;
 		this.methods = methods;
-		/* initialize the method boundaries */
-		assert (Parameters.numWrites >= Parameters.numWriteAlls);
-		cdf[0] = 10 * Parameters.numWriteAlls;
-		cdf[1] = 10 * Parameters.numWrites;
-		cdf[2] = cdf[1] + 10 * Parameters.numSnapshots;
 	}
 
 	public void stopThread() {
@@ -76,8 +55,10 @@ public class ThreadSortedSetLoop implements Runnable {
 	public void run() {
 
 		while (!stop) {
-			Integer newInt = rand.nextInt(Parameters.range);
+			int newInt = keys.nextKey();
 			int coin = rand.nextInt(1000);
+			int op = -1;
+			long start = startOperation();
 			if (coin < cdf[0]) { // 1. should we run a writeAll operation?
 
 				// init a collection
@@ -96,12 +77,15 @@ public class ThreadSortedSetLoop implements Runnable {
 										// operation?
 
 				if (2 * (coin - cdf[0]) < cdf[1] - cdf[0]) { // add
+					op = LatencyHistogram.ADD;
 					if (bench.add(newInt)) {
 						numAdd++;
+						keys.added(newInt);
 					} else {
 						failures++;
 					}
 				} else { // remove
+					op = LatencyHistogram.REMOVE;
 					if (bench.remove(newInt)) {
 						numRemove++;
 					} else
@@ -109,11 +93,13 @@ public class ThreadSortedSetLoop implements Runnable {
 				}
 
 			} else if (coin < cdf[2]) { // 3. should we run a readAll operation?
+				op = LatencyHistogram.SIZE;
 
 				bench.size();
 				numSize++;
 
 			} else { // 4. then we should run a readSome operation
+				op = LatencyHistogram.CONTAINS;
 
 				if (bench.contains(newInt))
 					numContains++;
@@ -121,6 +107,10 @@ public class ThreadSortedSetLoop implements Runnable {
 					failures++;
 			}
 			total++;
+			if (sampled)
+				publish();
+			if (op >= 0 && latencies != null)
+				latencies[op].record(System.nanoTime() - start);
 
 			assert total == failures + numContains + numSize + numRemove
 					+ numAdd + numRemoveAll + numAddAll;
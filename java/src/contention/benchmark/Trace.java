@@ -0,0 +1,35 @@
+package contention.benchmark;
+
+/**
+ * The binary traces of the operations of the integer set benchmark, one
+ * file per benchmark thread, which a thread records (option --record) and
+ * replays (option --replay) in place of drawing its operations.
+ *
+ * A trace starts with the int MAGIC and the byte VERSION, followed by the
+ * operations, each a byte code and its arguments in big-endian order:
+ * ADD, REMOVE and CONTAINS take the key as an int, SIZE takes nothing,
+ * ADD_ALL and REMOVE_ALL take the number of keys as an int followed by the
+ * keys, and RANGE takes the lowest and highest keys as ints.
+ */
+public class Trace {
+
+	public static final int MAGIC = 0x53425452; // "SBTR"
+	public static final byte VERSION = 1;
+
+	/** The codes of the operations, which ADD to SIZE share with LatencyHistogram */
+	public static final byte ADD = LatencyHistogram.ADD;
+	public static final byte REMOVE = LatencyHistogram.REMOVE;
+	public static final byte CONTAINS = LatencyHistogram.CONTAINS;
+	public static final byte SIZE = LatencyHistogram.SIZE;
+	public static final byte ADD_ALL = 4;
+	public static final byte REMOVE_ALL = 5;
+	public static final byte RANGE = 6;
+
+	/**
+	 * @return the name of the trace of a thread, the path suffixed with
+	 *         the number of the thread
+	 */
+	public static String fileOf(String path, int threadNum) {
+		return path + "." + threadNum;
+	}
+}
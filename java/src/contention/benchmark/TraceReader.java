@@ -0,0 +1,79 @@
+package contention.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads the operations of a trace one at a time, exposing the arguments of
+ * the last operation read.
+ */
+public class TraceReader implements Closeable {
+
+	private final DataInputStream in;
+
+	/** The code of the last operation read */
+	public byte op;
+	/** The key of the last operation read, or its lowest key for RANGE */
+	public int key;
+	/** The highest key of the last operation read, for RANGE */
+	public int hi;
+
+	public TraceReader(String file) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file), 1 << 16));
+		if (in.readInt() != Trace.MAGIC || in.readByte() != Trace.VERSION) {
+			in.close();
+			throw new IOException("Not a trace of this version: " + file);
+		}
+	}
+
+	/**
+	 * Reads the next operation.
+	 * 
+	 * @param batch
+	 *            receives the keys of an ADD_ALL or REMOVE_ALL
+	 * @return false at the end of the trace
+	 */
+	public boolean next(List<Integer> batch) throws IOException {
+		int code = in.read();
+		if (code < 0)
+			return false;
+		op = (byte) code;
+		try {
+			switch (op) {
+			case Trace.ADD:
+			case Trace.REMOVE:
+			case Trace.CONTAINS:
+				key = in.readInt();
+				break;
+			case Trace.SIZE:
+				break;
+			case Trace.ADD_ALL:
+			case Trace.REMOVE_ALL:
+				int count = in.readInt();
+				batch.clear();
+				for (int i = 0; i < count; i++)
+					batch.add(in.readInt());
+				break;
+			case Trace.RANGE:
+				key = in.readInt();
+				hi = in.readInt();
+				break;
+			default:
+				throw new IOException("Unknown operation in the trace: " + op);
+			}
+		} catch (EOFException e) {
+			throw new IOException("Truncated trace", e);
+		}
+		return true;
+	}
+
+	public void close() throws IOException {
+		in.close();
+	}
+}
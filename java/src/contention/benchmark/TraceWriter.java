@@ -0,0 +1,56 @@
+package contention.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes the operations of a benchmark thread to its trace, buffered so
+ * that the thread rarely waits for the file.
+ */
+public class TraceWriter implements Closeable {
+
+	private final DataOutputStream out;
+
+	public TraceWriter(String file) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		out.writeInt(Trace.MAGIC);
+		out.writeByte(Trace.VERSION);
+	}
+
+	/**
+	 * Writes an operation on a key, ADD, REMOVE or CONTAINS.
+	 */
+	public void write(byte op, int key) throws IOException {
+		out.writeByte(op);
+		out.writeInt(key);
+	}
+
+	public void writeSize() throws IOException {
+		out.writeByte(Trace.SIZE);
+	}
+
+	/**
+	 * Writes an operation on a batch of keys, ADD_ALL or REMOVE_ALL.
+	 */
+	public void writeAll(byte op, List<Integer> keys) throws IOException {
+		out.writeByte(op);
+		out.writeInt(keys.size());
+		for (int key : keys)
+			out.writeInt(key);
+	}
+
+	public void writeRange(int lo, int hi) throws IOException {
+		out.writeByte(Trace.RANGE);
+		out.writeInt(lo);
+		out.writeInt(hi);
+	}
+
+	public void close() throws IOException {
+		out.close();
+	}
+}
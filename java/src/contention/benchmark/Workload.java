@@ -0,0 +1,110 @@
+package contention.benchmark;
+
+/**
+ * The core workloads of YCSB, chosen from the command line (option
+ * --workload) for the map benchmarks, each a mix of operations on keys of
+ * a given distribution:
+ * 
+ * a: update heavy, 50 % reads and 50 % updates, zipfian
+ * b: read mostly, 95 % reads and 5 % updates, zipfian
+ * c: read only, 100 % reads, zipfian
+ * d: read latest, 95 % reads and 5 % inserts, latest
+ * e: short ranges, 95 % scans and 5 % inserts, zipfian
+ * f: read-modify-write, 50 % reads and 50 % read-modify-writes, zipfian
+ * 
+ * As in YCSB, zipfian keys are scrambled, so that the hot keys are spread
+ * over the range, and a scan covers a length of keys drawn uniformly up to
+ * the scan length. Based on B. F. Cooper, A. Silberstein, E. Tam,
+ * R. Ramakrishnan, R. Sears. Benchmarking cloud serving systems with
+ * YCSB. In SoCC, 2010.
+ */
+public class Workload {
+
+	/** The operations of the workloads */
+	public static final int READ = 0, UPDATE = 1, INSERT = 2, SCAN = 3,
+			READ_MODIFY_WRITE = 4;
+
+	public static final String[] NAMES = { "a", "b", "c", "d", "e", "f" };
+
+	public final String name;
+	public final String description;
+	/** The distribution of the keys, one of KeyGenerator.NAMES */
+	public final String distribution;
+	/** The per-mille of each operation, indexed by READ to READ_MODIFY_WRITE */
+	private final int[] cdf = new int[5];
+
+	private Workload(String name, String description, String distribution,
+			int reads, int updates, int inserts, int scans) {
+		this.name = name;
+		this.description = description;
+		this.distribution = distribution;
+		cdf[READ] = 10 * reads;
+		cdf[UPDATE] = cdf[READ] + 10 * updates;
+		cdf[INSERT] = cdf[UPDATE] + 10 * inserts;
+		cdf[SCAN] = cdf[INSERT] + 10 * scans;
+		cdf[READ_MODIFY_WRITE] = 1000;
+	}
+
+	/**
+	 * @param name
+	 *            one of {@link #NAMES}
+	 * @throws IllegalArgumentException
+	 *             if the name is unknown
+	 */
+	public static Workload forName(String name) {
+		if ("a".equals(name))
+			return new Workload(name, "update heavy", KeyGenerator.SCRAMBLED,
+					50, 50, 0, 0);
+		if ("b".equals(name))
+			return new Workload(name, "read mostly", KeyGenerator.SCRAMBLED,
+					95, 5, 0, 0);
+		if ("c".equals(name))
+			return new Workload(name, "read only", KeyGenerator.SCRAMBLED,
+					100, 0, 0, 0);
+		if ("d".equals(name))
+			return new Workload(name, "read latest", KeyGenerator.LATEST,
+					95, 0, 5, 0);
+		if ("e".equals(name))
+			return new Workload(name, "short ranges", KeyGenerator.SCRAMBLED,
+					0, 0, 5, 95);
+		if ("f".equals(name))
+			return new Workload(name, "read-modify-write",
+					KeyGenerator.SCRAMBLED, 50, 0, 0, 0);
+		throw new IllegalArgumentException("Unknown workload: " + name);
+	}
+
+	public boolean hasScans() {
+		return cdf[SCAN] > cdf[INSERT];
+	}
+
+	/**
+	 * @param coin
+	 *            drawn uniformly in [0, 1000)
+	 * @return the operation to run, from READ to READ_MODIFY_WRITE
+	 */
+	public int nextOp(int coin) {
+		int op = READ;
+		while (coin >= cdf[op])
+			op++;
+		return op;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder mix = new StringBuilder();
+		String[] names = { "reads", "updates", "inserts", "scans",
+				"read-modify-writes" };
+		int previous = 0;
+		for (int op = READ; op <= READ_MODIFY_WRITE; op++) {
+			if (cdf[op] > previous) {
+				if (mix.length() > 0)
+					mix.append(", ");
+				mix.append((cdf[op] - previous) / 10).append(" % ")
+						.append(names[op]);
+			}
+			previous = cdf[op];
+		}
+		return name + ", " + description + " (" + mix + ", " + distribution
+				+ " keys)";
+	}
+}
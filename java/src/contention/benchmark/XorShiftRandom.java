@@ -0,0 +1,113 @@
+package contention.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A xorshift128+ generator for the benchmark threads, each owning its own.
+ * Unlike java.util.Random, whose seed is an AtomicLong updated by a CAS at
+ * every draw, its state is two plain longs, so that drawing the keys and
+ * the operations costs a few cycles instead of a share of the operation.
+ * It is not thread-safe. Based on
+ * S. Vigna. Further scramblings of Marsaglia's xorshift generators.
+ * Journal of Computational and Applied Mathematics, 2017.
+ */
+public class XorShiftRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	/** Makes the seeds of the generators created at once differ */
+	private static final AtomicLong seedUniquifier = new AtomicLong();
+
+	private long s0, s1;
+
+	public XorShiftRandom() {
+		this(System.nanoTime() ^ seedUniquifier.addAndGet(GOLDEN_GAMMA));
+	}
+
+	public XorShiftRandom(long seed) {
+		super(seed);
+	}
+
+	/**
+	 * Returns a generator whose sequence is fixed by the seed of the
+	 * command line (option --seed) and differs for each stream, such as
+	 * each benchmark thread, or an unseeded generator without the option.
+	 */
+	public static XorShiftRandom newInstance(long stream) {
+		if (!Parameters.fixedSeed)
+			return new XorShiftRandom();
+		return new XorShiftRandom(mix(Parameters.seed) + stream);
+	}
+
+	/**
+	 * The finalizer of SplitMix64, spreading a seed over the state.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Sets the state from the seed as SplitMix64 does, so that close seeds
+	 * give unrelated sequences. Called by the constructor of Random.
+	 */
+	@Override
+	public void setSeed(long seed) {
+		s0 = mix(seed + GOLDEN_GAMMA);
+		s1 = mix(seed + 2 * GOLDEN_GAMMA);
+		if ((s0 | s1) == 0)
+			s1 = GOLDEN_GAMMA;
+	}
+
+	@Override
+	public long nextLong() {
+		long x = s0;
+		long y = s1;
+		s0 = y;
+		x ^= x << 23;
+		s1 = x ^ y ^ (x >>> 17) ^ (y >>> 26);
+		return s1 + y;
+	}
+
+	@Override
+	protected int next(int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	/**
+	 * Draws uniformly in [0, bound) with a multiplication rather than a
+	 * division, rejecting the few values that would bias it. Based on
+	 * D. Lemire. Fast random integer generation in an interval. ACM
+	 * Transactions on Modeling and Computer Simulation, 2019.
+	 */
+	@Override
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException("bound must be positive");
+		long product = (nextLong() >>> 32) * bound;
+		if ((product & 0xFFFFFFFFL) < bound) {
+			long threshold = ((1L << 32) - bound) % bound;
+			while ((product & 0xFFFFFFFFL) < threshold)
+				product = (nextLong() >>> 32) * bound;
+		}
+		return (int) (product >>> 32);
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+}
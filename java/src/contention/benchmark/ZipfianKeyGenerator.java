@@ -0,0 +1,82 @@
+package contention.benchmark;
+
+import java.util.Random;
+
+/**
+ * Draws the keys following a Zipfian distribution, the key of rank i
+ * being drawn with a probability proportional to 1/(i+1)^theta, so that
+ * key 0 is the most popular. Based on the algorithm of
+ * J. Gray, P. Sundaresan, S. Englert, K. Baclawski, P. J. Weinberger.
+ * Quickly generating billion-record synthetic databases. In SIGMOD, 1994,
+ * as used by YCSB.
+ */
+public class ZipfianKeyGenerator extends KeyGenerator {
+
+	/** The terms of zeta summed exactly, the rest being integrated */
+	private static final int EXACT_TERMS = 1 << 20;
+
+	/** The last zeta computed, shared as each thread has a generator */
+	private static int lastRange;
+	private static double lastTheta, lastZeta;
+
+	private final double theta, zetan, alpha, eta;
+
+	/**
+	 * @param theta
+	 *            the skew, strictly between 0 and 1
+	 */
+	public ZipfianKeyGenerator(Random random, int range, double theta) {
+		super(random, range);
+		if (!(theta > 0 && theta < 1))
+			throw new IllegalArgumentException(
+					"The Zipfian constant must lie strictly between 0 and 1: "
+							+ theta);
+		this.theta = theta;
+		this.zetan = zeta(range, theta);
+		this.alpha = 1.0 / (1.0 - theta);
+		this.eta = (1 - Math.pow(2.0 / range, 1 - theta))
+				/ (1 - zeta(2, theta) / zetan);
+	}
+
+	/**
+	 * Returns the sum of 1/i^theta for i from 1 to n, approximating the
+	 * terms beyond EXACT_TERMS by an integral so that large ranges do not
+	 * delay the start of the threads.
+	 */
+	static synchronized double zeta(int n, double theta) {
+		if (n == lastRange && theta == lastTheta)
+			return lastZeta;
+		int exact = Math.min(n, EXACT_TERMS);
+		double sum = 0;
+		for (int i = 1; i <= exact; i++)
+			sum += 1 / Math.pow(i, theta);
+		if (n > exact)
+			sum += (Math.pow(n + 0.5, 1 - theta) - Math.pow(exact + 0.5,
+					1 - theta)) / (1 - theta);
+		if (n > 2) {
+			lastRange = n;
+			lastTheta = theta;
+			lastZeta = sum;
+		}
+		return sum;
+	}
+
+	/**
+	 * @return the rank of the next key, 0 being the most popular
+	 */
+	protected int nextRank() {
+		double u = random.nextDouble();
+		double uz = u * zetan;
+		if (uz < 1)
+			return 0;
+		if (uz < 1 + Math.pow(0.5, theta))
+			return Math.min(1, range - 1);
+		int rank = (int) (range * Math.pow(eta * u - eta + 1, alpha));
+		return Math.min(rank, range - 1);
+	}
+
+	@Override
+	public int nextKey() {
+		return nextRank();
+	}
+}
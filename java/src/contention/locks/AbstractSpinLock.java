@@ -0,0 +1,58 @@
+package contention.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Base class of the spin locks, providing the parts of the
+ * {@link Lock} interface that are not specific to a spinning strategy.
+ * Spin locks are not reentrant and do not support conditions.
+ */
+public abstract class AbstractSpinLock implements Lock {
+
+	/** The number of spins after which a waiting thread yields its processor */
+	static final int SPINS_BEFORE_YIELD = 1 << 10;
+
+	/**
+	 * Waits for one spin iteration. Yields now and then, so that a holder
+	 * preempted on an oversubscribed machine gets a chance to release.
+	 * 
+	 * @param spins
+	 *            the number of spins done so far
+	 * @return the new number of spins
+	 */
+	static int pause(int spins) {
+		if ((++spins & (SPINS_BEFORE_YIELD - 1)) == 0)
+			Thread.yield();
+		else
+			Thread.onSpinWait();
+		return spins;
+	}
+
+	@Override
+	public void lockInterruptibly() throws InterruptedException {
+		if (Thread.interrupted())
+			throw new InterruptedException();
+		lock();
+	}
+
+	@Override
+	public boolean tryLock(long time, TimeUnit unit)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(time);
+		while (!tryLock()) {
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			if (System.nanoTime() - deadline >= 0)
+				return false;
+			Thread.onSpinWait();
+		}
+		return true;
+	}
+
+	@Override
+	public Condition newCondition() {
+		throw new UnsupportedOperationException("spin locks do not support conditions");
+	}
+}
@@ -0,0 +1,92 @@
+package contention.locks;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * CLH queue lock: each waiting thread spins on the queue node of its
+ * predecessor, and recycles that node once it holds the lock.
+ * 
+ * A tryLock that finds the lock held once enqueued does not wait: it
+ * leaves its node locked in the queue, pointing to its predecessor, and
+ * the successor of the node skips and recycles it.
+ * 
+ * Based on "The Art of Multiprocessor Programming", M. Herlihy, N. Shavit,
+ * chapters 7.5.1 and 7.6, 2008.
+ */
+public class CLHLock extends AbstractSpinLock {
+
+	private final AtomicReference<QNode> tail = new AtomicReference<QNode>(new QNode());
+	/** The queue nodes of the current holder, only accessed by the holder */
+	private QNode holder;
+	private QNode holderPred;
+
+	@Override
+	public void lock() {
+		QNode qnode = QNode.acquire();
+		qnode.locked = true;
+		QNode pred = tail.getAndSet(qnode);
+		int spins = 0;
+		while (pred.locked) {
+			QNode abandoned = pred;
+			pred = skip(pred);
+			if (pred == abandoned)
+				spins = pause(spins);
+		}
+		holder = qnode;
+		holderPred = pred;
+	}
+
+	@Override
+	public boolean tryLock() {
+		QNode pred = tail.get();
+		if (pred.locked && pred.pred == null)
+			return false;
+		QNode qnode = QNode.acquire();
+		qnode.locked = true;
+		if (!tail.compareAndSet(pred, qnode)) {
+			QNode.release(qnode);
+			return false;
+		}
+		// pred may have been recycled and enqueued again since it was
+		// read (ABA), but as its successor this thread is now the only
+		// one to recycle it, so its state can be trusted from here on
+		QNode abandoned;
+		do {
+			abandoned = pred;
+			pred = skip(pred);
+		} while (pred != abandoned);
+		if (pred.locked) {
+			qnode.pred = pred;
+			return false;
+		}
+		holder = qnode;
+		holderPred = pred;
+		return true;
+	}
+
+	/**
+	 * Skips a node abandoned by a tryLock, recycling it, as this thread is
+	 * its successor.
+	 * 
+	 * @return the node to wait for instead, or the node itself if it was
+	 *         not abandoned
+	 */
+	private static QNode skip(QNode node) {
+		QNode pred = node.pred;
+		if (pred == null)
+			return node;
+		QNode.release(node);
+		return pred;
+	}
+
+	@Override
+	public void unlock() {
+		QNode qnode = holder;
+		QNode pred = holderPred;
+		holder = null;
+		holderPred = null;
+		qnode.locked = false;
+		// nobody spins on the predecessor node anymore
+		QNode.release(pred);
+	}
+}
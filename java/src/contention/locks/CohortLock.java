@@ -0,0 +1,172 @@
+package contention.locks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * NUMA-aware cohort lock: a global ticket lock plus one local ticket lock
+ * per socket. The holder passes the lock to a waiter of its own socket, up
+ * to {@link #MAX_PASSES} times in a row, before releasing the global lock.
+ * 
+ * Based on D. Dice, V. J. Marathe and N. Shavit. Lock Cohorting: A General
+ * Technique for Designing NUMA Locks. In PPoPP, 2012.
+ * 
+ * Java cannot tell on which processor a thread runs, so threads are
+ * assigned to sockets round-robin in the order they first take a cohort
+ * lock. Pin the benchmark threads accordingly (e.g. with numactl) for the
+ * partitioning to match the hardware.
+ */
+public class CohortLock extends AbstractSpinLock {
+
+	/** The maximum number of consecutive local handoffs */
+	static final int MAX_PASSES = 64;
+
+	/** The number of sockets, detected from /sys unless set explicitly */
+	private static volatile int numSockets = detectSockets();
+
+	private static final AtomicInteger threadCounter = new AtomicInteger(0);
+	private static final ThreadLocal<Integer> socket = new ThreadLocal<Integer>() {
+		@Override
+		protected Integer initialValue() {
+			return threadCounter.getAndIncrement() % numSockets;
+		}
+	};
+
+	/** The handoffs of all cohort locks */
+	private static final LongAdder intraSocketHandoffs = new LongAdder();
+	private static final LongAdder crossSocketHandoffs = new LongAdder();
+
+	private final TicketLock global = new TicketLock();
+	private final LocalLock[] locals;
+	/** The socket of the current holder, only accessed by the holder */
+	private int holderSocket;
+	/** The socket that last acquired the global lock, accessed under it */
+	private int lastGlobalSocket = -1;
+
+	private static final class LocalLock {
+		final AtomicInteger nextTicket = new AtomicInteger(0);
+		volatile int nowServing = 0;
+		/** Whether the cohort of this socket owns the global lock */
+		boolean globalOwned = false;
+		int passes = 0;
+	}
+
+	public CohortLock() {
+		locals = new LocalLock[numSockets];
+		for (int i = 0; i < locals.length; i++)
+			locals[i] = new LocalLock();
+	}
+
+	@Override
+	public void lock() {
+		int s = socket.get() % locals.length;
+		LocalLock local = locals[s];
+		int ticket = local.nextTicket.getAndIncrement();
+		int spins = 0;
+		while (local.nowServing != ticket)
+			spins = pause(spins);
+		if (!local.globalOwned)
+			global.lock();
+		acquired(s, local);
+	}
+
+	@Override
+	public boolean tryLock() {
+		int s = socket.get() % locals.length;
+		LocalLock local = locals[s];
+		int serving = local.nowServing;
+		if (!local.nextTicket.compareAndSet(serving, serving + 1))
+			return false;
+		if (!local.globalOwned && !global.tryLock()) {
+			local.nowServing = serving + 1;
+			return false;
+		}
+		acquired(s, local);
+		return true;
+	}
+
+	/**
+	 * Completes an acquisition once both the local lock of socket s and the
+	 * global lock are held.
+	 */
+	private void acquired(int s, LocalLock local) {
+		if (local.globalOwned) {
+			// the lock was passed within the socket
+			intraSocketHandoffs.increment();
+		} else {
+			local.globalOwned = true;
+			local.passes = 0;
+			if (lastGlobalSocket == s)
+				intraSocketHandoffs.increment();
+			else if (lastGlobalSocket != -1)
+				crossSocketHandoffs.increment();
+			lastGlobalSocket = s;
+		}
+		holderSocket = s;
+	}
+
+	@Override
+	public void unlock() {
+		LocalLock local = locals[holderSocket];
+		boolean waiters = local.nextTicket.get() - local.nowServing > 1;
+		if (waiters && local.passes < MAX_PASSES) {
+			local.passes++;
+		} else {
+			local.globalOwned = false;
+			global.unlock();
+		}
+		local.nowServing = local.nowServing + 1;
+	}
+
+	/**
+	 * Sets the number of sockets of the cohort locks created afterwards.
+	 */
+	public static void setSockets(int sockets) {
+		if (sockets < 1)
+			throw new IllegalArgumentException("Number of sockets must be positive: " + sockets);
+		numSockets = sockets;
+	}
+
+	public static int getSockets() {
+		return numSockets;
+	}
+
+	public static long getIntraSocketHandoffs() {
+		return intraSocketHandoffs.sum();
+	}
+
+	public static long getCrossSocketHandoffs() {
+		return crossSocketHandoffs.sum();
+	}
+
+	public static void resetStats() {
+		intraSocketHandoffs.reset();
+		crossSocketHandoffs.reset();
+	}
+
+	/**
+	 * Counts the distinct physical packages listed in the sysfs CPU
+	 * topology, or returns 1 if it is not available.
+	 */
+	private static int detectSockets() {
+		File[] cpus = new File("/sys/devices/system/cpu").listFiles();
+		if (cpus == null)
+			return 1;
+		Set<String> packages = new HashSet<String>();
+		for (File cpu : cpus) {
+			if (!cpu.getName().matches("cpu[0-9]+"))
+				continue;
+			File id = new File(cpu, "topology/physical_package_id");
+			try {
+				packages.add(new String(Files.readAllBytes(id.toPath())).trim());
+			} catch (Exception e) {
+				// offline CPUs have no topology directory
+			}
+		}
+		return Math.max(1, packages.size());
+	}
+}
@@ -0,0 +1,64 @@
+package contention.locks;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Creates the locks of the lock-based structures, so that the lock
+ * implementation can be chosen from the command line (option --lock)
+ * rather than being hard-wired in each structure.
+ */
+public class LockFactory {
+
+	public static final String REENTRANT = "reentrant";
+	public static final String TTAS = "ttas";
+	public static final String TICKET = "ticket";
+	public static final String MCS = "mcs";
+	public static final String CLH = "clh";
+	public static final String COHORT = "cohort";
+
+	public static final String[] NAMES = { REENTRANT, TTAS, TICKET, MCS, CLH, COHORT };
+
+	/** The lock implementation used by {@link #newLock()} */
+	private static volatile String defaultName = REENTRANT;
+
+	/**
+	 * Sets the lock implementation returned by {@link #newLock()}.
+	 * 
+	 * @param name
+	 *            one of {@link #NAMES}
+	 * @throws IllegalArgumentException
+	 *             if the name is unknown
+	 */
+	public static void setDefault(String name) {
+		newLock(name);
+		defaultName = name;
+	}
+
+	public static String getDefault() {
+		return defaultName;
+	}
+
+	/**
+	 * Returns a new lock of the implementation chosen on the command line.
+	 */
+	public static Lock newLock() {
+		return newLock(defaultName);
+	}
+
+	public static Lock newLock(String name) {
+		if (REENTRANT.equals(name))
+			return new ReentrantLock();
+		if (TTAS.equals(name))
+			return new TTASBackoffLock();
+		if (TICKET.equals(name))
+			return new TicketLock();
+		if (MCS.equals(name))
+			return new MCSLock();
+		if (CLH.equals(name))
+			return new CLHLock();
+		if (COHORT.equals(name))
+			return new CohortLock();
+		throw new IllegalArgumentException("Unknown lock: " + name);
+	}
+}
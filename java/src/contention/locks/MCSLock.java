@@ -0,0 +1,62 @@
+package contention.locks;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * MCS queue lock: each waiting thread spins on its own queue node, which
+ * its predecessor unlocks on release.
+ * 
+ * Based on "The Art of Multiprocessor Programming", M. Herlihy, N. Shavit,
+ * chapter 7.5.2, 2008.
+ */
+public class MCSLock extends AbstractSpinLock {
+
+	private final AtomicReference<QNode> tail = new AtomicReference<QNode>(null);
+	/** The queue node of the current holder, only accessed by the holder */
+	private QNode holder;
+
+	@Override
+	public void lock() {
+		QNode qnode = QNode.acquire();
+		qnode.locked = true;
+		QNode pred = tail.getAndSet(qnode);
+		if (pred != null) {
+			pred.next = qnode;
+			int spins = 0;
+			while (qnode.locked)
+				spins = pause(spins);
+		}
+		holder = qnode;
+	}
+
+	@Override
+	public boolean tryLock() {
+		if (tail.get() != null)
+			return false;
+		QNode qnode = QNode.acquire();
+		if (tail.compareAndSet(null, qnode)) {
+			holder = qnode;
+			return true;
+		}
+		QNode.release(qnode);
+		return false;
+	}
+
+	@Override
+	public void unlock() {
+		QNode qnode = holder;
+		holder = null;
+		if (qnode.next == null) {
+			if (tail.compareAndSet(qnode, null)) {
+				QNode.release(qnode);
+				return;
+			}
+			// a successor is enqueuing, wait for it to link itself
+			int spins = 0;
+			while (qnode.next == null)
+				spins = pause(spins);
+		}
+		qnode.next.locked = false;
+		QNode.release(qnode);
+	}
+}
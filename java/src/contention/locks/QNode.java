@@ -0,0 +1,53 @@
+package contention.locks;
+
+/**
+ * Queue node of the MCS and CLH locks.
+ * 
+ * Queue nodes are recycled through a per-thread free list rather than
+ * being bound to a (thread, lock) pair, so that structures allocating one
+ * lock per element (e.g. hand-over-hand lists) do not need a thread-local
+ * per lock.
+ */
+final class QNode {
+
+	volatile boolean locked;
+	volatile QNode next;
+	/**
+	 * Set on a CLH node left locked by a failed tryLock: the node its
+	 * successor waits for instead
+	 */
+	volatile QNode pred;
+	/** The next node in the free list of the owning thread */
+	private QNode free;
+
+	private static final ThreadLocal<QNode[]> freeList = new ThreadLocal<QNode[]>() {
+		@Override
+		protected QNode[] initialValue() {
+			return new QNode[1];
+		}
+	};
+
+	/**
+	 * Returns a queue node of the current thread, unlocked and unlinked.
+	 */
+	static QNode acquire() {
+		QNode[] head = freeList.get();
+		QNode node = head[0];
+		if (node == null)
+			return new QNode();
+		head[0] = node.free;
+		node.free = null;
+		node.next = null;
+		node.pred = null;
+		return node;
+	}
+
+	/**
+	 * Gives back a queue node that no other thread refers to anymore.
+	 */
+	static void release(QNode node) {
+		QNode[] head = freeList.get();
+		node.free = head[0];
+		head[0] = node;
+	}
+}
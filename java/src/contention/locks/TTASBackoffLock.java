@@ -0,0 +1,46 @@
+package contention.locks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Test-and-test-and-set lock with randomized exponential backoff.
+ * 
+ * Based on "The Art of Multiprocessor Programming", M. Herlihy, N. Shavit,
+ * chapter 7.4, 2008.
+ */
+public class TTASBackoffLock extends AbstractSpinLock {
+
+	/** The minimum and maximum number of spins to back off for */
+	static final int MIN_DELAY = 16;
+	static final int MAX_DELAY = 4096;
+
+	private final AtomicBoolean state = new AtomicBoolean(false);
+
+	@Override
+	public void lock() {
+		int limit = MIN_DELAY;
+		int spins = 0;
+		while (true) {
+			while (state.get())
+				spins = pause(spins);
+			if (!state.getAndSet(true))
+				return;
+			// lost the race against another thread, back off
+			int delay = ThreadLocalRandom.current().nextInt(limit);
+			limit = Math.min(MAX_DELAY, 2 * limit);
+			for (int i = 0; i < delay; i++)
+				spins = pause(spins);
+		}
+	}
+
+	@Override
+	public boolean tryLock() {
+		return !state.get() && !state.getAndSet(true);
+	}
+
+	@Override
+	public void unlock() {
+		state.set(false);
+	}
+}
@@ -0,0 +1,33 @@
+package contention.locks;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FIFO ticket lock: each thread takes a ticket and spins until the lock
+ * serves it.
+ */
+public class TicketLock extends AbstractSpinLock {
+
+	private final AtomicInteger nextTicket = new AtomicInteger(0);
+	private volatile int nowServing = 0;
+
+	@Override
+	public void lock() {
+		int ticket = nextTicket.getAndIncrement();
+		int spins = 0;
+		while (nowServing != ticket)
+			spins = pause(spins);
+	}
+
+	@Override
+	public boolean tryLock() {
+		int serving = nowServing;
+		return nextTicket.compareAndSet(serving, serving + 1);
+	}
+
+	@Override
+	public void unlock() {
+		// only the holder writes nowServing
+		nowServing = nowServing + 1;
+	}
+}
@@ -0,0 +1,248 @@
+package soft3410;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+import contention.locks.LockFactory;
+
+/**
+ * A fine-grained bucket locking hash map implementation of an int-to-int
+ * map, chaining the entries of a bucket in nodes holding the key and the
+ * value as ints.
+ *
+ * Both the number of buckets and of locks are powers of two, and there are
+ * never fewer buckets than locks, so the lock of a bucket only depends on
+ * the hash of its keys and stays the same when the table doubles. Doubling
+ * takes all the locks.
+ */
+public class BucketLockingChainingHashTableIntMap
+        extends contention.abstractions.AbstractCompositionalIntMap {
+
+    private static final int numLocks = 1024;
+
+    /** Read again once a bucket lock is held, as it may have doubled */
+    private volatile Node[] table;
+    /** The number of entries, striped so that buckets do not contend */
+    private final LongAdder size = new LongAdder();
+    private final Lock[] bucketLock;
+
+    /**
+     * Constructor for the hash table.
+     */
+    public BucketLockingChainingHashTableIntMap() {
+        this.table = new Node[numLocks];
+        this.bucketLock = new Lock[numLocks];
+        for (int i = 0; i < numLocks; i++) {
+            bucketLock[i] = LockFactory.newLock();
+        }
+    }
+
+    private Lock lockOf(int hash) {
+        return bucketLock[hash & (numLocks - 1)];
+    }
+
+    /**
+     * Returns the value of a key.
+     * @param key
+     * @return
+     */
+    public int getInt(int key) {
+        int hash = CoarseGrainedChainingHashTableIntMap.hash(key);
+        Lock lock = lockOf(hash);
+        lock.lock();
+        try {
+            Node[] table = this.table;
+            Node node = table[hash & (table.length - 1)];
+            while (node != null) {
+                if (node.key == key) {
+                    return node.value;
+                }
+                node = node.next;
+            }
+            return NO_VALUE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Maps a key to a value, replacing its previous value.
+     * @param key
+     * @param value
+     * @return
+     */
+    public int putInt(int key, int value) {
+        return insert(key, value, true);
+    }
+
+    /**
+     * Maps a key to a value, unless it is already mapped.
+     * @param key
+     * @param value
+     * @return
+     */
+    public int putIfAbsentInt(int key, int value) {
+        return insert(key, value, false);
+    }
+
+    /**
+     * Adds or updates the mapping of a key under its bucket lock, then
+     * doubles the table if it holds more entries than buckets.
+     * @param key
+     * @param value
+     * @param replace whether the value of a mapped key is replaced
+     * @return the previous value
+     */
+    private int insert(int key, int value, boolean replace) {
+        checkValue(value);
+        int hash = CoarseGrainedChainingHashTableIntMap.hash(key);
+        Node[] table;
+        Lock lock = lockOf(hash);
+        lock.lock();
+        try {
+            table = this.table;
+            int index = hash & (table.length - 1);
+            for (Node node = table[index]; node != null; node = node.next) {
+                if (node.key == key) {
+                    int previous = node.value;
+                    if (replace) {
+                        node.value = value;
+                    }
+                    return previous;
+                }
+            }
+            table[index] = new Node(key, value, table[index]);
+            size.increment();
+        } finally {
+            lock.unlock();
+        }
+        if (size.sum() > table.length) {
+            resize(table);
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Removes the mapping of a key.
+     * @param key
+     * @return
+     */
+    public int removeInt(int key) {
+        int hash = CoarseGrainedChainingHashTableIntMap.hash(key);
+        Lock lock = lockOf(hash);
+        lock.lock();
+        try {
+            Node[] table = this.table;
+            int index = hash & (table.length - 1);
+            Node prev = null;
+            Node node = table[index];
+            while (node != null && node.key != key) {
+                prev = node;
+                node = node.next;
+            }
+            if (node == null) {
+                return NO_VALUE;
+            }
+            if (prev == null) {
+                table[index] = node.next;
+            } else {
+                prev.next = node.next;
+            }
+            size.decrement();
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lockAll() {
+        for (int i = 0; i < numLocks; i++) {
+            bucketLock[i].lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = numLocks - 1; i >= 0; i--) {
+            bucketLock[i].unlock();
+        }
+    }
+
+    /**
+     * Doubles the table under all the locks, unless another thread already
+     * replaced the given one.
+     * @param old
+     */
+    private void resize(Node[] old) {
+        lockAll();
+        try {
+            if (table != old) {
+                return;
+            }
+            Node[] newTable = new Node[2 * old.length];
+            for (Node node : old) {
+                while (node != null) {
+                    Node next = node.next;
+                    int index = CoarseGrainedChainingHashTableIntMap.hash(node.key)
+                            & (newTable.length - 1);
+                    node.next = newTable[index];
+                    newTable[index] = node;
+                    node = next;
+                }
+            }
+            table = newTable;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    protected long[] mappings() {
+        lockAll();
+        try {
+            long[] mappings = new long[(int) size.sum()];
+            int count = 0;
+            for (Node node : table) {
+                for (; node != null; node = node.next) {
+                    mappings[count++] = pack(node.key, node.value);
+                }
+            }
+            return mappings;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Returns the size of the map from the striped counter.
+     * @return
+     */
+    public int size() {
+        return (int) size.sum();
+    }
+
+    /**
+     * Empty the map.
+     */
+    public void clear() {
+        lockAll();
+        try {
+            this.size.reset();
+            this.table = new Node[numLocks];
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Class for the chained entries of a bucket.
+     */
+    static final class Node {
+        final int key;
+        int value;
+        Node next;
+
+        Node(int key, int value, Node next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package soft3410;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+
+import contention.locks.LockFactory;
 
 /**
  * A fine-grained bucket locking hash map implementation of a set.
@@ -10,19 +13,19 @@ public class BucketLockingChainingHashTableIntSet
 
     private ArrayList<HashNode<Integer>> table;
     private static final int numBucket = 1024;
-    private int size;
-    ReentrantLock bucketLock[];
+    /** The number of elements, striped so that buckets do not contend */
+    private final LongAdder size = new LongAdder();
+    Lock bucketLock[];
 
     /**
      * Constructor for the hash table.
      */
     public BucketLockingChainingHashTableIntSet() {
-        this.size = 0;
         this.table = new ArrayList<HashNode<Integer>> (numBucket);
-        this.bucketLock = new ReentrantLock[numBucket];
+        this.bucketLock = new Lock[numBucket];
         for (int i = 0; i < numBucket; i++) {
             table.add(null);
-            bucketLock[i] = new ReentrantLock();
+            bucketLock[i] = LockFactory.newLock();
         }
     }
 
@@ -43,10 +46,105 @@ public class BucketLockingChainingHashTableIntSet
      * @return
      */
     public boolean addInt(int x) {
-        bucketLock[getIndex(x)].lock();
+        Lock lock = bucketLock[getIndex(x)];
+        lock.lock();
+        try {
+            return insert(x);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove an int from the set.
+     * @param x
+     * @return
+     */
+    public boolean removeInt(int x) {
+        Lock lock = bucketLock[getIndex(x)];
+        lock.lock();
+        try {
+            return delete(x);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add the ints of a collection, grouped by bucket so that each bucket
+     * lock is acquired once.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean addAll(Collection<Integer> c) {
+        long[] batch = groupByBucket(c);
+        boolean changed = false;
+        for (int i = 0; i < batch.length; ) {
+            int index = (int) (batch[i] >> 32);
+            Lock lock = bucketLock[index];
+            lock.lock();
+            try {
+                for (; i < batch.length && (int) (batch[i] >> 32) == index; i++) {
+                    if (i == 0 || batch[i] != batch[i - 1]) {
+                        changed |= insert((int) batch[i]);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Remove the ints of a collection, grouped by bucket so that each bucket
+     * lock is acquired once.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean removeAll(Collection<Integer> c) {
+        long[] batch = groupByBucket(c);
+        boolean changed = false;
+        for (int i = 0; i < batch.length; ) {
+            int index = (int) (batch[i] >> 32);
+            Lock lock = bucketLock[index];
+            lock.lock();
+            try {
+                for (; i < batch.length && (int) (batch[i] >> 32) == index; i++) {
+                    if (i == 0 || batch[i] != batch[i - 1]) {
+                        changed |= delete((int) batch[i]);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the ints of a batch sorted by bucket, each packed below the
+     * index of its bucket, so that duplicates end up next to each other.
+     * @param c
+     * @return
+     */
+    private long[] groupByBucket(Collection<Integer> c) {
+        long[] batch = new long[c.size()];
+        int i = 0;
+        for (int key : c) {
+            batch[i++] = ((long) getIndex(key) << 32) | (key & 0xffffffffL);
+        }
+        Arrays.sort(batch);
+        return batch;
+    }
 
-        if((size/numBucket) >= 10) {
-            bucketLock[getIndex(x)].unlock();
+    /**
+     * Adds an int to its bucket. The caller must hold the bucket lock.
+     * @param x
+     * @return
+     */
+    private boolean insert(int x) {
+        if((size.sum()/numBucket) >= 10) {
             return false;
         }
 
@@ -64,23 +162,20 @@ public class BucketLockingChainingHashTableIntSet
             } else {
                 prev.setNext(node);
             }
-            size++;
-            bucketLock[getIndex(x)].unlock();
+            size.increment();
             return true;
         } else {
             node.setValue(x);
         }
-        bucketLock[getIndex(x)].unlock();
         return false;
     }
 
     /**
-     * Remove an int from the set.
+     * Removes an int from its bucket. The caller must hold the bucket lock.
      * @param x
      * @return
      */
-    public boolean removeInt(int x) {
-        bucketLock[getIndex(x)].lock();
+    private boolean delete(int x) {
         HashNode<Integer> prev = null;
         HashNode<Integer> node = table.get(getIndex(x));
 
@@ -90,7 +185,6 @@ public class BucketLockingChainingHashTableIntSet
         }
 
         if (node == null) {
-            bucketLock[getIndex(x)].unlock();
             return false;
         } else {
             if (prev == null) {
@@ -98,8 +192,7 @@ public class BucketLockingChainingHashTableIntSet
             } else {
                 prev.setNext(node.getNext());
             }
-            size--;
-            bucketLock[getIndex(x)].unlock();
+            size.decrement();
             return true;
         }
     }
@@ -124,33 +217,37 @@ public class BucketLockingChainingHashTableIntSet
     }
 
     /**
-     * Returns the size of the set.
+     * Returns the size of the set from the striped counter. In
+     * linearizable mode, all the bucket locks are held while summing it.
      * @return
      */
-    public synchronized int size() {
-        int sizeA = 0;
+    public int size() {
+        if (!linearizableSize) {
+            return (int) size.sum();
+        }
+        Lock[] locks = bucketLock;
         for (int i = 0; i < numBucket; i++) {
-            HashNode<Integer> current = table.get(i);
-            if (current != null) {
-                while (current != null) {
-                    current = current.getNext();
-                    sizeA++;
-                }
+            locks[i].lock();
+        }
+        try {
+            return (int) size.sum();
+        } finally {
+            for (int i = numBucket - 1; i >= 0; i--) {
+                locks[i].unlock();
             }
         }
-        return sizeA;
     }
 
     /**
      * Empty the set.
      */
     public synchronized void clear() {
-        this.size = 0;
+        this.size.reset();
         this.table = new ArrayList<HashNode<Integer>> (numBucket);
-        this.bucketLock = new ReentrantLock[numBucket];
+        this.bucketLock = new Lock[numBucket];
         for (int i = 0; i < numBucket; i++) {
             table.add(null);
-            bucketLock[i] = new ReentrantLock();
+            bucketLock[i] = LockFactory.newLock();
         }
     }
 }
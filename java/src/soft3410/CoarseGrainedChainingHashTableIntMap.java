@@ -0,0 +1,222 @@
+package soft3410;
+import java.util.concurrent.locks.Lock;
+
+import contention.locks.LockFactory;
+
+/**
+ * A coarse-grained locking hash map implementation of an int-to-int map.
+ * The entries of a bucket are chained in nodes holding the key and the
+ * value as ints, and the table doubles once it holds more entries than
+ * buckets.
+ */
+public class CoarseGrainedChainingHashTableIntMap
+        extends contention.abstractions.AbstractCompositionalIntMap {
+
+    private static final int initialCapacity = 1024;
+
+    private Node[] table;
+    private int size;
+    /** The lock protecting the whole table */
+    private final Lock lock;
+
+    /**
+     * Constructor for the hash table.
+     */
+    public CoarseGrainedChainingHashTableIntMap() {
+        this.lock = LockFactory.newLock();
+        this.size = 0;
+        this.table = new Node[initialCapacity];
+    }
+
+    /**
+     * Hash function spreading the keys over the bits of the index.
+     * @param key
+     * @return
+     */
+    static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the value of a key.
+     * @param key
+     * @return
+     */
+    public int getInt(int key) {
+        lock.lock();
+        try {
+            Node node = table[hash(key) & (table.length - 1)];
+            while (node != null) {
+                if (node.key == key) {
+                    return node.value;
+                }
+                node = node.next;
+            }
+            return NO_VALUE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Maps a key to a value, replacing its previous value.
+     * @param key
+     * @param value
+     * @return
+     */
+    public int putInt(int key, int value) {
+        checkValue(value);
+        lock.lock();
+        try {
+            return insert(key, value, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Maps a key to a value, unless it is already mapped.
+     * @param key
+     * @param value
+     * @return
+     */
+    public int putIfAbsentInt(int key, int value) {
+        checkValue(value);
+        lock.lock();
+        try {
+            return insert(key, value, false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the mapping of a key.
+     * @param key
+     * @return
+     */
+    public int removeInt(int key) {
+        lock.lock();
+        try {
+            int index = hash(key) & (table.length - 1);
+            Node prev = null;
+            Node node = table[index];
+            while (node != null && node.key != key) {
+                prev = node;
+                node = node.next;
+            }
+            if (node == null) {
+                return NO_VALUE;
+            }
+            if (prev == null) {
+                table[index] = node.next;
+            } else {
+                prev.next = node.next;
+            }
+            size--;
+            return node.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds or updates the mapping of a key. The caller must hold the lock.
+     * @param key
+     * @param value
+     * @param replace whether the value of a mapped key is replaced
+     * @return the previous value
+     */
+    private int insert(int key, int value, boolean replace) {
+        int index = hash(key) & (table.length - 1);
+        for (Node node = table[index]; node != null; node = node.next) {
+            if (node.key == key) {
+                int previous = node.value;
+                if (replace) {
+                    node.value = value;
+                }
+                return previous;
+            }
+        }
+        table[index] = new Node(key, value, table[index]);
+        if (++size > table.length) {
+            resize();
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Doubles the table. The caller must hold the lock.
+     */
+    private void resize() {
+        Node[] newTable = new Node[2 * table.length];
+        for (Node node : table) {
+            while (node != null) {
+                Node next = node.next;
+                int index = hash(node.key) & (newTable.length - 1);
+                node.next = newTable[index];
+                newTable[index] = node;
+                node = next;
+            }
+        }
+        table = newTable;
+    }
+
+    protected long[] mappings() {
+        lock.lock();
+        try {
+            long[] mappings = new long[size];
+            int count = 0;
+            for (Node node : table) {
+                for (; node != null; node = node.next) {
+                    mappings[count++] = pack(node.key, node.value);
+                }
+            }
+            return mappings;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the size of the map, counted by the updates.
+     * @return
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     *  Empty the map.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            this.size = 0;
+            this.table = new Node[initialCapacity];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Class for the chained entries of a bucket.
+     */
+    static final class Node {
+        final int key;
+        int value;
+        Node next;
+
+        Node(int key, int value, Node next) {
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package soft3410;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+
+import contention.locks.LockFactory;
 
 /**
  * A coarse-grained locking hash map implementation of a set.
@@ -10,11 +13,14 @@ public class CoarseGrainedChainingHashTableIntSet
     private ArrayList<HashNode<Integer>> table;
     private static final int numBucket = 1024;
     private int size;
+    /** The lock protecting the whole table */
+    private final Lock lock;
 
     /**
      * Constructor for the hash table.
      */
     public CoarseGrainedChainingHashTableIntSet() {
+        this.lock = LockFactory.newLock();
         this.size = 0;
         this.table = new ArrayList<HashNode<Integer>> (numBucket);
         for (int i = 0; i < numBucket; i++) {
@@ -38,7 +44,73 @@ public class CoarseGrainedChainingHashTableIntSet
      * @param x
      * @return
      */
-    public synchronized boolean addInt(int x) {
+    public boolean addInt(int x) {
+        lock.lock();
+        try {
+            return insert(x);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove an int from the set.
+     * @param x
+     * @return
+     */
+    public boolean removeInt(int x) {
+        lock.lock();
+        try {
+            return delete(x);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add the ints of a collection under a single acquisition of the lock.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean addAll(Collection<Integer> c) {
+        int[] keys = sortedKeys(c);
+        boolean changed = false;
+        lock.lock();
+        try {
+            for (int x : keys) {
+                changed |= insert(x);
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove the ints of a collection under a single acquisition of the lock.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean removeAll(Collection<Integer> c) {
+        int[] keys = sortedKeys(c);
+        boolean changed = false;
+        lock.lock();
+        try {
+            for (int x : keys) {
+                changed |= delete(x);
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an int to its bucket. The caller must hold the lock.
+     * @param x
+     * @return
+     */
+    private boolean insert(int x) {
         if((size/numBucket) >= 10) {
             return false;
         }
@@ -64,11 +136,11 @@ public class CoarseGrainedChainingHashTableIntSet
     }
 
     /**
-     * Remove an int from the set.
+     * Removes an int from its bucket. The caller must hold the lock.
      * @param x
      * @return
      */
-    public synchronized boolean removeInt(int x) {
+    private boolean delete(int x) {
         HashNode<Integer> prev = null;
         HashNode<Integer> node = table.get(getIndex(x));
         while (node != null && node.getKey() != x) {
@@ -93,44 +165,48 @@ public class CoarseGrainedChainingHashTableIntSet
      * @param x
      * @return
      */
-    public synchronized boolean containsInt(int x) {
-        HashNode<Integer> node = table.get(getIndex(x));
-        while(node != null) {
-            if (node.getKey() == x) {
-                return true;
+    public boolean containsInt(int x) {
+        lock.lock();
+        try {
+            HashNode<Integer> node = table.get(getIndex(x));
+            while(node != null) {
+                if (node.getKey() == x) {
+                    return true;
+                }
+                node = node.getNext();
             }
-            node = node.getNext();
+            return false;
+        } finally {
+            lock.unlock();
         }
-        return false;
-
     }
 
     /**
-     * Returns the size of the set.
+     * Returns the size of the set, counted by the updates.
      * @return
      */
     public int size() {
-        int sizeA = 0;
-        for (int i = 0; i < numBucket; i++) {
-            HashNode<Integer> current = table.get(i);
-            if (current != null) {
-                while (current != null) {
-                    current = current.getNext();
-                    sizeA++;
-                }
-            }
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
         }
-        return sizeA;
     }
 
     /**
      *  Empty the set.
      */
-    public synchronized void clear() {
-        this.size = 0;
-        this.table = new ArrayList<HashNode<Integer>> (numBucket);
-        for (int i = 0; i < numBucket; i++) {
-            table.add(null);
+    public void clear() {
+        lock.lock();
+        try {
+            this.size = 0;
+            this.table = new ArrayList<HashNode<Integer>> (numBucket);
+            for (int i = 0; i < numBucket; i++) {
+                table.add(null);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -1,17 +1,25 @@
 package soft3410;
+import java.util.Collection;
+import java.util.concurrent.locks.Lock;
+
+import contention.abstractions.BulkLoadAlg;
+import contention.locks.LockFactory;
 
 /**
  * A coarse-grained locking linked list implementation of a set.
  */
 public class CoarseGrainedLinkedListIntSet
-    extends contention.abstractions.AbstractCompositionalIntSet {
+    extends contention.abstractions.AbstractCompositionalIntSet
+    implements BulkLoadAlg {
   final private Node head;
   final private Node tail;
+  final private Lock lock;
 
   public CoarseGrainedLinkedListIntSet() {
     head = new Node(Integer.MIN_VALUE);
     tail = new Node(Integer.MAX_VALUE);
     head.setNext(tail);
+    lock = LockFactory.newLock();
   }
 
   /**
@@ -20,17 +28,22 @@ public class CoarseGrainedLinkedListIntSet
    * @param value  The new int to be added
    * @return false if the int already exists in the set
    */
-  public synchronized boolean addInt(int value) {
-    Node predecessor = findPredecessor(value);
-    Node current = predecessor.getNext();
-
-    if (current.value == value) {
-      return false;
+  public boolean addInt(int value) {
+    lock.lock();
+    try {
+      Node predecessor = findPredecessor(value);
+      Node current = predecessor.getNext();
+
+      if (current.value == value) {
+        return false;
+      }
+      Node node = new Node(value);
+      node.setNext(current);
+      predecessor.setNext(node);
+      return true;
+    } finally {
+      lock.unlock();
     }
-    Node node = new Node(value);
-    node.setNext(current);
-    predecessor.setNext(node);
-    return true;
   }
 
   /**
@@ -39,15 +52,74 @@ public class CoarseGrainedLinkedListIntSet
    * @param value  The int to be removed
    * @return false if the int did not exist in the set
    */
-  public synchronized boolean removeInt(int value) {
-    Node predecessor = findPredecessor(value);
-    Node current = predecessor.getNext();
+  public boolean removeInt(int value) {
+    lock.lock();
+    try {
+      Node predecessor = findPredecessor(value);
+      Node current = predecessor.getNext();
+
+      if (current.value != value) {
+        return false;
+      }
+      predecessor.setNext(current.getNext());
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
 
-    if (current.value != value) {
-      return false;
+  /**
+   * Add the ints of a collection under a single acquisition of the lock, in a single
+   * traversal of the list as the batch is sorted first.
+   *
+   * @param c  The ints to be added
+   * @return true if the set changed
+   */
+  public boolean addAll(Collection<Integer> c) {
+    int[] values = sortedKeys(c);
+    boolean changed = false;
+    lock.lock();
+    try {
+      Node predecessor = head;
+      for (int value : values) {
+        predecessor = findPredecessor(predecessor, value);
+        Node current = predecessor.getNext();
+        if (current.value != value) {
+          predecessor.setNext(new Node(value, current));
+          changed = true;
+        }
+      }
+      return changed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Remove the ints of a collection under a single acquisition of the lock, in a single
+   * traversal of the list as the batch is sorted first.
+   *
+   * @param c  The ints to be removed
+   * @return true if the set changed
+   */
+  public boolean removeAll(Collection<Integer> c) {
+    int[] values = sortedKeys(c);
+    boolean changed = false;
+    lock.lock();
+    try {
+      Node predecessor = head;
+      for (int value : values) {
+        predecessor = findPredecessor(predecessor, value);
+        Node current = predecessor.getNext();
+        if (current.value == value) {
+          predecessor.setNext(current.getNext());
+          changed = true;
+        }
+      }
+      return changed;
+    } finally {
+      lock.unlock();
     }
-    predecessor.setNext(current.getNext());
-    return true;
   }
 
   /**
@@ -56,28 +128,46 @@ public class CoarseGrainedLinkedListIntSet
    * @param value  The int to be checked
    * @return true if value exists in the set
    */
-  public synchronized boolean containsInt(int value) {
-    Node current = findPredecessor(value).getNext();
-    return (current.value == value);
+  public boolean containsInt(int value) {
+    lock.lock();
+    try {
+      Node current = findPredecessor(value).getNext();
+      return (current.value == value);
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized int size() {
-    int size = 0;
-    Node current = head.getNext();
-    while (current.getNext() != null) {
-      current = current.getNext();
-      size++;
+  public int size() {
+    lock.lock();
+    try {
+      int size = 0;
+      Node current = head.getNext();
+      while (current.getNext() != null) {
+        current = current.getNext();
+        size++;
+      }
+      return size;
+    } finally {
+      lock.unlock();
     }
-    return size;
   }
 
   /**
    * Find and return the predecessor to the node that would contain the given value.
+   * The caller must hold the lock.
    * @param value The value to search for.
    * @return the Node containing the largest value smaller than the search value
    */
-  private synchronized Node findPredecessor(int value) {
-    Node current = head;
+  private Node findPredecessor(int value) {
+    return findPredecessor(head, value);
+  }
+
+  /**
+   * Find the predecessor to the node that would contain the given value,
+   * starting from a node known to contain a smaller value.
+   */
+  private Node findPredecessor(Node current, int value) {
     while (true) {
       // Found a match in the next node, so return its predecessor
       if (current.getNext().value >= value) {
@@ -87,11 +177,32 @@ public class CoarseGrainedLinkedListIntSet
     }
   }
 
+  /**
+   * Replace the content of the set with sorted ints, linked from the last
+   * one backwards in a single pass.
+   *
+   * @param keys  The distinct ints to be loaded, in ascending order
+   */
+  public void bulkLoad(int[] keys) {
+    lock.lock();
+    try {
+      Node next = tail;
+      for (int i = keys.length - 1; i >= 0; i--) {
+        next = new Node(keys[i], next);
+      }
+      head.setNext(next);
+    } finally {
+      lock.unlock();
+    }
+  }
+
   /**
    * Empty the set.
    */
-  public synchronized void clear() {
+  public void clear() {
+    lock.lock();
     head.setNext(tail);
+    lock.unlock();
   }
 
   class Node {
@@ -0,0 +1,307 @@
+/*
+ *  Based on example code from:
+ *  "The Art of Multiprocessor Programming"
+ *  M. Herlihy, N. SHavit
+ *  chapter 14.3, 2008,
+ *  and
+ *  Synchrobench's source code, v1.1.0-alpha
+ *  "SequentialSkipListIntSet.java"
+ *  https://github.com/gramoli/synchrobench/blob/master/java/src/skiplists/sequential/SequentialSkipListIntSet.java
+ *  by Vincent Gramoli.
+ */
+
+package soft3410;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.Lock;
+
+import contention.abstractions.CompositionalRangeQuery;
+import contention.locks.LockFactory;
+
+/**
+ * A coarse-grained locking skip-list implementation of an int-to-int map,
+ * whose nodes hold the key and the value as ints. Its range queries go
+ * over the keys under the lock.
+ */
+public class CoarseGrainedSkiplistIntMap
+        extends contention.abstractions.AbstractCompositionalIntMap
+        implements CompositionalRangeQuery {
+
+    /** The maximum number of levels */
+    final private int maxIndex;
+    /** The highest level holding a node, where traversals start */
+    private int level;
+    /** The number of mappings, updated under the lock */
+    private int size = 0;
+    /** The first element of the list */
+    final private Node head;
+    /** The last element of the list */
+    final private Node tail;
+    /** The lock protecting the whole list */
+    final private Lock lock;
+
+    public CoarseGrainedSkiplistIntMap() {
+        this.lock = LockFactory.newLock();
+        this.maxIndex = 31;
+        this.head = new Node(maxIndex, Integer.MIN_VALUE, NO_VALUE);
+        this.tail = new Node(maxIndex, Integer.MAX_VALUE, NO_VALUE);
+        for (int i = 0; i <= maxIndex; i++) {
+            head.next[i] = tail;
+        }
+    }
+
+    /**
+     * Random level int generator in range of maximum level, at most one
+     * level above the current highest level.
+     * @return
+     */
+    private int randomLevel() {
+        return Math.min(Math.min(maxIndex - 1, level + 1),
+                CoarseGrainedSkiplistIntSet.randomLeveler());
+    }
+
+    /**
+     * Fills update with the predecessors of the key at each level.
+     * The caller must hold the lock.
+     * @param key
+     * @param update
+     * @return the first node whose key is not lower than the given one
+     */
+    private Node find(int key, Node[] update) {
+        Node curr = head;
+        for (int i = level; i >= 0; i--) {
+            Node next = curr.next[i];
+            while (next.key < key) {
+                curr = next;
+                next = curr.next[i];
+            }
+            if (update != null) {
+                update[i] = curr;
+            }
+        }
+        return curr.next[0];
+    }
+
+    /**
+     * Goes through the levels to return the value of the key.
+     * @param key
+     * @return
+     */
+    public int getInt(int key) {
+        lock.lock();
+        try {
+            Node curr = find(key, null);
+            return (curr.key == key) ? curr.value : NO_VALUE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Maps a key to a value, replacing its previous value.
+     * @param key
+     * @param value
+     * @return
+     */
+    public int putInt(int key, int value) {
+        return insert(key, value, true);
+    }
+
+    /**
+     * Maps a key to a value, unless it is already mapped.
+     * @param key
+     * @param value
+     * @return
+     */
+    public int putIfAbsentInt(int key, int value) {
+        return insert(key, value, false);
+    }
+
+    /**
+     * Finds the position of the key, updates its node if it exists, and
+     * otherwise links a new node after the predecessors at each level.
+     * @param key
+     * @param value
+     * @param replace whether the value of a mapped key is replaced
+     * @return the previous value
+     */
+    private int insert(int key, int value, boolean replace) {
+        checkValue(value);
+        Node[] update = new Node[maxIndex + 1];
+        lock.lock();
+        try {
+            Node curr = find(key, update);
+            if (curr.key == key) {
+                int previous = curr.value;
+                if (replace) {
+                    curr.value = value;
+                }
+                return previous;
+            }
+            int nodeLevel = randomLevel();
+            if (nodeLevel > level) {
+                update[nodeLevel] = head;
+                level = nodeLevel;
+            }
+            curr = new Node(nodeLevel, key, value);
+            for (int i = 0; i <= nodeLevel; i++) {
+                curr.next[i] = update[i].next[i];
+                update[i].next[i] = curr;
+            }
+            size++;
+            return NO_VALUE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the node of the key, if any, and links its predecessors to its
+     * successors.
+     * @param key
+     * @return
+     */
+    public int removeInt(int key) {
+        Node[] update = new Node[maxIndex + 1];
+        lock.lock();
+        try {
+            Node curr = find(key, update);
+            if (curr.key != key) {
+                return NO_VALUE;
+            }
+            for (int i = 0; i < curr.next.length; i++) {
+                update[i].next[i] = curr.next[i];
+            }
+            while (level > 0 && head.next[level] == tail) {
+                level--;
+            }
+            size--;
+            return curr.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts the keys in [lo, hi) under the lock.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int rangeCount(int lo, int hi) {
+        lock.lock();
+        try {
+            int count = 0;
+            for (Node curr = find(lo, null); curr.key < hi; curr = curr.next[0]) {
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the keys in [lo, hi) under the lock.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int[] rangeScan(int lo, int hi) {
+        lock.lock();
+        try {
+            int[] keys = new int[16];
+            int count = 0;
+            for (Node curr = find(lo, null); curr.key < hi; curr = curr.next[0]) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * count);
+                }
+                keys[count++] = curr.key;
+            }
+            return Arrays.copyOf(keys, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Walks the bottom level up to the key of the given rank.
+     * @param rank
+     * @return
+     */
+    public int select(int rank) {
+        lock.lock();
+        try {
+            if (rank < 0 || rank >= size) {
+                throw new NoSuchElementException("No key of rank " + rank);
+            }
+            Node curr = head.next[0];
+            for (int i = 0; i < rank; i++) {
+                curr = curr.next[0];
+            }
+            return curr.key;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected long[] mappings() {
+        lock.lock();
+        try {
+            long[] mappings = new long[size];
+            int count = 0;
+            for (Node curr = head.next[0]; curr != tail; curr = curr.next[0]) {
+                mappings[count++] = pack(curr.key, curr.value);
+            }
+            return mappings;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of mappings.
+     * @return
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clears the skip-list by setting the head node to point to the tail
+     * node.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            for (int i = 0; i <= this.maxIndex; i++) {
+                this.head.next[i] = this.tail;
+            }
+            this.level = 0;
+            this.size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Class Node of the list, holding a mapping.
+     */
+    private static final class Node {
+        final int key;
+        int value;
+        final Node[] next;
+
+        Node(int index, int key, int value) {
+            this.key = key;
+            this.value = value;
+            this.next = new Node[index + 1];
+        }
+    }
+}
@@ -14,20 +14,58 @@
 
 package soft3410;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 import java.lang.Math;
 
+import contention.abstractions.BulkLoadAlg;
+import contention.abstractions.CompositionalRangeQuery;
+
 /**
  * A fine-grained optimistic locking skip-list implementation of an int set.
  */
 public final class FasterSkiplistIntSet
-        extends contention.abstractions.AbstractCompositionalIntSet {
+        extends contention.abstractions.AbstractCompositionalIntSet
+        implements BulkLoadAlg, CompositionalRangeQuery {
+
+    private static final AtomicIntegerFieldUpdater<FasterSkiplistIntSet> levelUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(FasterSkiplistIntSet.class, "level");
+    private static final AtomicIntegerFieldUpdater<FasterSkiplistIntSet> scannersUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(FasterSkiplistIntSet.class, "scanners");
 
     /** The maximum number of levels */
     final private int maxLevel;
+    /**
+     * The highest level a node may be linked at, where traversals start.
+     * It only grows, and is raised before a node gets linked above it.
+     */
+    private volatile int level = 0;
+    /**
+     * Taken in exclusive mode by the range queries, which thus see no
+     * update in progress, and in shared mode by the updates while a range
+     * query runs or waits.
+     */
+    final private StampedLock scanLock = new StampedLock();
+    /** The number of range queries running or waiting for the scan lock */
+    private volatile int scanners = 0;
+    /**
+     * The updates that started and finished without the scan lock, as no
+     * range query was running. An update counts itself in started before
+     * it reads scanners, and a range query waits until both counts agree
+     * after raising scanners, so that no such update is left running.
+     * Both are striped, so that the updates share no counter.
+     */
+    final private LongAdder started = new LongAdder();
+    final private LongAdder finished = new LongAdder();
+    /** The number of elements, updated before the updates finish */
+    final private LongAdder size = new LongAdder();
     /** The first element of the list */
     final private Node head;
     /** The last element of the list */
@@ -63,10 +101,23 @@ public final class FasterSkiplistIntSet
 
     /**
      * Random level int generator in range of maximum level.
+     * A new node rises at most one level above the current highest level,
+     * so that the levels grow with the size of the set.
      * @return
      */
     private int randomLevel() {
-        return Math.min((maxLevel - 1), (randomLeveler()));
+        return Math.min(Math.min(maxLevel - 1, level + 1), randomLeveler());
+    }
+
+    /**
+     * Raises the highest level to the given level, if it is lower.
+     * @param topLevel
+     */
+    private void raiseLevel(int topLevel) {
+        int current = level;
+        while (topLevel > current && !levelUpdater.compareAndSet(this, current, topLevel)) {
+            current = level;
+        }
     }
 
     public FasterSkiplistIntSet() {
@@ -79,20 +130,98 @@ public final class FasterSkiplistIntSet
     }
 
     /**
-     * Traverses the bottom level of the skiplist, counting all nodes.
-     * Returns the number of unique valued nodes in the skip-list.
+     * Starts an update, without the scan lock unless a range query runs or
+     * waits.
+     * @return the read stamp of the scan lock, or 0 without it
+     */
+    private long beginUpdate() {
+        started.increment();
+        if (scanners == 0) {
+            return 0;
+        }
+        finished.increment();
+        return scanLock.readLock();
+    }
+
+    private void endUpdate(long stamp) {
+        if (stamp == 0) {
+            finished.increment();
+        } else {
+            scanLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Excludes the updates: takes the scan lock, which the updates starting
+     * from now on wait for, then waits for those that started without it.
+     * @return the write stamp of the scan lock
+     */
+    private long beginScan() {
+        scannersUpdater.incrementAndGet(this);
+        long stamp = scanLock.writeLock();
+        // finished first, as both counts only grow
+        while (finished.sum() != started.sum()) {
+            Thread.yield();
+        }
+        return stamp;
+    }
+
+    private void endScan(long stamp) {
+        scanLock.unlockWrite(stamp);
+        scannersUpdater.decrementAndGet(this);
+    }
+
+    /**
+     * Returns the number of unique valued nodes in the skip-list from the
+     * striped counter. In linearizable mode, the updates are excluded while
+     * summing it.
      * @return
      */
     @Override
     public int size() {
-        int size = 0;
-        Node node = head.next[0].next[0];
+        if (!linearizableSize) {
+            return (int) size.sum();
+        }
+        long stamp = beginScan();
+        try {
+            return (int) size.sum();
+        } finally {
+            endScan(stamp);
+        }
+    }
 
-        while (node != null) {
-            node = node.next[0];
-            size++;
+    /**
+     * Replaces the content of the skip-list with sorted values, appending
+     * each node behind the last node of each of its levels, bottom-up in a
+     * single pass. The updates are excluded meanwhile.
+     * @param keys the distinct values to be loaded, in ascending order
+     */
+    public void bulkLoad(int[] keys) {
+        long stamp = beginScan();
+        try {
+            Node[] last = new Node[maxLevel + 1];
+            Arrays.fill(last, head);
+            level = 0;
+            for (int key : keys) {
+                int topLevel = randomLevel();
+                if (topLevel > level) {
+                    level = topLevel;
+                }
+                Node node = new Node(key, topLevel);
+                node.fullyLinked = true;
+                for (int i = 0; i <= topLevel; i++) {
+                    last[i].next[i] = node;
+                    last[i] = node;
+                }
+            }
+            for (int i = 0; i <= maxLevel; i++) {
+                last[i].next[i] = tail;
+            }
+            size.reset();
+            size.add(keys.length);
+        } finally {
+            endScan(stamp);
         }
-        return size;
     }
 
     /**
@@ -104,6 +233,8 @@ public final class FasterSkiplistIntSet
         for (int i = 0; i <= this.maxLevel; i++) {
             this.head.next[i] = this.tail;
         }
+        this.level = 0;
+        this.size.reset();
         return;
     }
 
@@ -135,7 +266,7 @@ public final class FasterSkiplistIntSet
         int levelFound = -1;
         Node pred = head;
 
-        for (int level = maxLevel; level >= 0; level--) {
+        for (int level = this.level; level >= 0; level--) {
             Node curr = pred.next[level];
 
             while (key > curr.key) {
@@ -195,7 +326,66 @@ public final class FasterSkiplistIntSet
      */
     @Override
     public boolean addInt(final int value) {
+        long stamp = beginUpdate();
+        try {
+            boolean added = doAddInt(value);
+            if (added) {
+                size.increment();
+            }
+            return added;
+        } finally {
+            endUpdate(stamp);
+        }
+    }
+
+    /**
+     * Adds the values of a batch in increasing order as a single update.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean addAll(Collection<Integer> c) {
+        int[] values = sortedKeys(c);
+        boolean changed = false;
+        long stamp = beginUpdate();
+        try {
+            for (int value : values) {
+                if (doAddInt(value)) {
+                    size.increment();
+                    changed = true;
+                }
+            }
+            return changed;
+        } finally {
+            endUpdate(stamp);
+        }
+    }
+
+    /**
+     * Removes the values of a batch in increasing order as a single
+     * update.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean removeAll(Collection<Integer> c) {
+        int[] values = sortedKeys(c);
+        boolean changed = false;
+        long stamp = beginUpdate();
+        try {
+            for (int value : values) {
+                if (doRemoveInt(value)) {
+                    size.decrement();
+                    changed = true;
+                }
+            }
+            return changed;
+        } finally {
+            endUpdate(stamp);
+        }
+    }
+
+    private boolean doAddInt(final int value) {
         int topLevel = randomLevel();
+        raiseLevel(topLevel);
         Node[] predecessors = (Node[]) new Node[maxLevel + 1];  //Sets of predecessors for different levels
         Node[] successors = (Node[]) new Node[maxLevel + 1];    //Sets of successors for different levels
 
@@ -233,6 +423,19 @@ public final class FasterSkiplistIntSet
      */
     @Override
     public boolean removeInt(final int value) {
+        long stamp = beginUpdate();
+        try {
+            boolean removed = doRemoveInt(value);
+            if (removed) {
+                size.decrement();
+            }
+            return removed;
+        } finally {
+            endUpdate(stamp);
+        }
+    }
+
+    private boolean doRemoveInt(final int value) {
         Node victim = null; //Victim to remove probs
         int topLevel = -1;  //Max level that victim exists at
         Node[] predecessors = (Node[]) new Node[maxLevel + 1];    //Victim's predecessors
@@ -262,6 +465,92 @@ public final class FasterSkiplistIntSet
         return false;
     }
 
+    /**
+     * Returns the first node whose key is not lower than the given value.
+     * @param value
+     * @return
+     */
+    private Node findFirst(int value) {
+        Node pred = head;
+        for (int level = this.level; level >= 0; level--) {
+            while (pred.next[level].key < value) {
+                pred = pred.next[level];
+            }
+        }
+        return pred.next[0];
+    }
+
+    /**
+     * Counts the values in [lo, hi) along the bottom level, excluding
+     * the updates for a consistent result.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    @Override
+    public int rangeCount(int lo, int hi) {
+        long stamp = beginScan();
+        try {
+            int count = 0;
+            for (Node node = findFirst(lo); node.key < hi; node = node.next[0]) {
+                count++;
+            }
+            return count;
+        } finally {
+            endScan(stamp);
+        }
+    }
+
+    /**
+     * Collects the values in [lo, hi) along the bottom level, excluding
+     * the updates for a consistent result.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    @Override
+    public int[] rangeScan(int lo, int hi) {
+        long stamp = beginScan();
+        try {
+            int[] values = new int[16];
+            int count = 0;
+            for (Node node = findFirst(lo); node.key < hi; node = node.next[0]) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, 2 * count);
+                }
+                values[count++] = node.key;
+            }
+            return Arrays.copyOf(values, count);
+        } finally {
+            endScan(stamp);
+        }
+    }
+
+    /**
+     * Walks the bottom level up to the value of the given rank.
+     * @param rank
+     * @return
+     */
+    @Override
+    public int select(int rank) {
+        if (rank < 0) {
+            throw new NoSuchElementException("Negative rank: " + rank);
+        }
+        long stamp = beginScan();
+        try {
+            Node node = head.next[0];
+            for (int i = 0; i < rank && node != tail; i++) {
+                node = node.next[0];
+            }
+            if (node == tail) {
+                throw new NoSuchElementException("No value of rank " + rank);
+            }
+            return node.key;
+        } finally {
+            endScan(stamp);
+        }
+    }
+
     /**
      * Class Node used for the link list.
      */
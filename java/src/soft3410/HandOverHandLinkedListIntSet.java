@@ -1,13 +1,21 @@
 package soft3410;
 
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.*;
+
+import contention.abstractions.BulkLoadAlg;
+import contention.locks.LockFactory;
 /**
  * A hand over hand locking linked list implementation of a set.
  */
 public class HandOverHandLinkedListIntSet
-    extends contention.abstractions.AbstractCompositionalIntSet {
+    extends contention.abstractions.AbstractCompositionalIntSet
+    implements BulkLoadAlg {
   final private Node head;
   final private Node tail;
+  /** The number of elements, updated while the locks are held */
+  final private LongAdder size = new LongAdder();
 
   public HandOverHandLinkedListIntSet() {
     head = new Node(Integer.MIN_VALUE);
@@ -41,6 +49,7 @@ public class HandOverHandLinkedListIntSet
     Node node = new Node(item);
     node.setNext(current);
     predecessor.setNext(node);
+    size.increment();
     predecessor.unlock();
     current.unlock();
     return true;
@@ -70,11 +79,86 @@ public class HandOverHandLinkedListIntSet
       return false;
     }
     predecessor.setNext(current.getNext());
+    size.decrement();
     predecessor.unlock();
     current.unlock();
     return true;
   }
 
+  /**
+   * Add the ints of a collection in a single hand over hand traversal of
+   * the list, as the batch is sorted first.
+   *
+   * @param c  The ints to be added
+   * @return true if the set changed
+   */
+  public boolean addAll(Collection<Integer> c) {
+    int[] items = sortedKeys(c);
+    boolean changed = false;
+    head.lock();
+    Node predecessor = head;
+    head.getNext().lock();
+    Node current = head.getNext();
+    for (int item : items) {
+      while (current.value < item) {
+        predecessor.unlock();
+        predecessor = current;
+        current.getNext().lock();
+        current = predecessor.getNext();
+      }
+      if (current.value != item) {
+        Node node = new Node(item);
+        node.setNext(current);
+        // locked before being published, so that the pair of locks held
+        // moves on to the new node and current
+        node.lock();
+        predecessor.setNext(node);
+        size.increment();
+        changed = true;
+        predecessor.unlock();
+        predecessor = node;
+      }
+    }
+    predecessor.unlock();
+    current.unlock();
+    return changed;
+  }
+
+  /**
+   * Remove the ints of a collection in a single hand over hand traversal of
+   * the list, as the batch is sorted first.
+   *
+   * @param c  The ints to be removed
+   * @return true if the set changed
+   */
+  public boolean removeAll(Collection<Integer> c) {
+    int[] items = sortedKeys(c);
+    boolean changed = false;
+    head.lock();
+    Node predecessor = head;
+    head.getNext().lock();
+    Node current = head.getNext();
+    for (int item : items) {
+      while (current.value < item) {
+        predecessor.unlock();
+        predecessor = current;
+        current.getNext().lock();
+        current = predecessor.getNext();
+      }
+      if (current.value == item) {
+        current.getNext().lock();
+        predecessor.setNext(current.getNext());
+        size.decrement();
+        changed = true;
+        current.unlock();
+        current = predecessor.getNext();
+      }
+    }
+    predecessor.unlock();
+    current.unlock();
+    return changed;
+  }
+
   /**
    * Check if an int is a member of the set.
    * 
@@ -97,21 +181,51 @@ public class HandOverHandLinkedListIntSet
     return (current.value == item);
   }
 
+  /**
+   * Returns the size of the set from the striped counter. In linearizable
+   * mode, the locks of all the nodes are taken in order and kept until the
+   * counter is read, so that no update is in progress.
+   *
+   * @return the number of ints in the set
+   */
   public int size() {
-    int size = 0;
+    if (!linearizableSize) {
+      return (int) size.sum();
+    }
     head.lock();
-    Node predecessor = head;
-    head.getNext().lock();
-    Node current = head.getNext();
+    Node current = head;
     while (current.getNext() != null) {
-      predecessor.unlock();
-      predecessor = current;
       current.getNext().lock();
-      current = predecessor.getNext();
-      size++;
+      current = current.getNext();
+    }
+    try {
+      return (int) size.sum();
+    } finally {
+      for (current = head; current != null; current = current.getNext()) {
+        current.unlock();
+      }
+    }
+  }
+
+  /**
+   * Replace the content of the set with sorted ints, linked from the last
+   * one backwards in a single pass.
+   *
+   * @param keys  The distinct ints to be loaded, in ascending order
+   */
+  public void bulkLoad(int[] keys) {
+    head.lock();
+    try {
+      Node next = tail;
+      for (int i = keys.length - 1; i >= 0; i--) {
+        next = new Node(keys[i], next);
+      }
+      head.setNext(next);
+      size.reset();
+      size.add(keys.length);
+    } finally {
+      head.unlock();
     }
-    predecessor.unlock();
-    return size;
   }
 
   /**
@@ -120,6 +234,7 @@ public class HandOverHandLinkedListIntSet
   public void clear() {
     head.lock();
     head.setNext(tail);
+    size.reset();
     head.unlock();
   }
 
@@ -132,7 +247,7 @@ public class HandOverHandLinkedListIntSet
     Node(int value, Node next) {
       this.value = value;
       this.next = next;
-      this.lock = new ReentrantLock();
+      this.lock = LockFactory.newLock();
     }
 
     Node(int value) {
@@ -0,0 +1,340 @@
+/*
+ *  Based on
+ *  M. Herlihy, Y. Lev, V. Luchangco, N. Shavit. A simple optimistic
+ *  skiplist algorithm. In SIROCCO, 2007,
+ *  and on the example code of
+ *  "The Art of Multiprocessor Programming"
+ *  M. Herlihy, N. Shavit, chapter 14.3, 2008.
+ */
+
+package soft3410;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fine-grained optimistic locking skip-list implementation of an
+ * int-to-int map, whose nodes hold the key and the value as ints.
+ *
+ * Lookups take no lock. An insertion searches without locking, then locks
+ * and validates the predecessors of the new node before linking it, and a
+ * removal first marks the node under its own lock. A value is replaced
+ * under the lock of its node, so that it is never written once the node
+ * is marked. Keys must lie strictly between Integer.MIN_VALUE and
+ * Integer.MAX_VALUE, which are the sentinels.
+ */
+public class LazySkiplistIntMap
+        extends contention.abstractions.AbstractCompositionalIntMap {
+
+    private static final AtomicIntegerFieldUpdater<LazySkiplistIntMap> levelUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(LazySkiplistIntMap.class, "level");
+
+    /** The maximum number of levels */
+    static final int MAX_LEVEL = 31;
+
+    /**
+     * The highest level a node may be linked at, where traversals start.
+     * It only grows, and is raised before a node gets linked above it.
+     */
+    private volatile int level = 0;
+    /** The number of mappings */
+    final private LongAdder size = new LongAdder();
+    /** The first element of the list */
+    final private Node head;
+    /** The last element of the list */
+    final private Node tail;
+
+    public LazySkiplistIntMap() {
+        this.head = new Node(Integer.MIN_VALUE, NO_VALUE, MAX_LEVEL);
+        this.tail = new Node(Integer.MAX_VALUE, NO_VALUE, MAX_LEVEL);
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            head.next.set(i, tail);
+        }
+        head.fullyLinked = true;
+        tail.fullyLinked = true;
+    }
+
+    /**
+     * Random level generator, where a node rises one more level with
+     * probability 1/2, at most one level above the current highest level.
+     * @return
+     */
+    private int randomLevel() {
+        int max = Math.min(MAX_LEVEL, level + 1);
+        int bits = ThreadLocalRandom.current().nextInt();
+        int height = 0;
+        while (height < max && (bits & 1) != 0) {
+            bits >>>= 1;
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Raises the highest level to the given level, if it is lower.
+     * @param topLevel
+     */
+    private void raiseLevel(int topLevel) {
+        int current = level;
+        while (topLevel > current && !levelUpdater.compareAndSet(this, current, topLevel)) {
+            current = level;
+        }
+    }
+
+    /**
+     * Fills the predecessors and successors of the key at each level,
+     * without locking.
+     * @param key
+     * @param preds
+     * @param succs
+     * @return the highest level holding the key, or -1
+     */
+    private int find(int key, Node[] preds, Node[] succs) {
+        int levelFound = -1;
+        Node pred = head;
+        for (int i = level; i >= 0; i--) {
+            Node curr = pred.next.get(i);
+            while (curr.key < key) {
+                pred = curr;
+                curr = pred.next.get(i);
+            }
+            if (levelFound == -1 && curr.key == key) {
+                levelFound = i;
+            }
+            preds[i] = pred;
+            succs[i] = curr;
+        }
+        return levelFound;
+    }
+
+    /**
+     * Returns the value of a key, without locking. The node of the key
+     * must be fully linked and not marked.
+     * @param key
+     * @return
+     */
+    public int getInt(int key) {
+        Node pred = head;
+        for (int i = level; i >= 0; i--) {
+            Node curr = pred.next.get(i);
+            while (curr.key < key) {
+                pred = curr;
+                curr = pred.next.get(i);
+            }
+            if (curr.key == key) {
+                return (curr.fullyLinked && !curr.marked) ? curr.value : NO_VALUE;
+            }
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Maps a key to a value, replacing its previous value.
+     * @param key
+     * @param value
+     * @return
+     */
+    public int putInt(int key, int value) {
+        return insert(key, value, true);
+    }
+
+    /**
+     * Maps a key to a value, unless it is already mapped.
+     * @param key
+     * @param value
+     * @return
+     */
+    public int putIfAbsentInt(int key, int value) {
+        return insert(key, value, false);
+    }
+
+    /**
+     * Updates the node of the key if it exists, and otherwise locks the
+     * predecessors at each level of the new node, checks that they are
+     * still unmarked and followed by the successors, and links it.
+     * @param key
+     * @param value
+     * @param replace whether the value of a mapped key is replaced
+     * @return the previous value
+     */
+    private int insert(int key, int value, boolean replace) {
+        checkValue(value);
+        int topLevel = randomLevel();
+        raiseLevel(topLevel);
+        Node[] preds = new Node[MAX_LEVEL + 1];
+        Node[] succs = new Node[MAX_LEVEL + 1];
+        for (;;) {
+            int levelFound = find(key, preds, succs);
+            if (levelFound != -1) {
+                Node found = succs[levelFound];
+                if (found.marked) {
+                    // being removed, retry once it is unlinked
+                    continue;
+                }
+                while (!found.fullyLinked) {
+                    Thread.onSpinWait();
+                }
+                if (!replace) {
+                    return found.value;
+                }
+                found.lock.lock();
+                try {
+                    if (!found.marked) {
+                        int previous = found.value;
+                        found.value = value;
+                        return previous;
+                    }
+                } finally {
+                    found.lock.unlock();
+                }
+                continue;
+            }
+            int highestLocked = -1;
+            try {
+                boolean valid = true;
+                for (int i = 0; valid && i <= topLevel; i++) {
+                    Node pred = preds[i];
+                    Node succ = succs[i];
+                    pred.lock.lock();
+                    highestLocked = i;
+                    valid = !pred.marked && !succ.marked && pred.next.get(i) == succ;
+                }
+                if (!valid) {
+                    continue;
+                }
+                Node node = new Node(key, value, topLevel);
+                for (int i = 0; i <= topLevel; i++) {
+                    node.next.set(i, succs[i]);
+                }
+                for (int i = 0; i <= topLevel; i++) {
+                    preds[i].next.set(i, node);
+                }
+                node.fullyLinked = true;
+                size.increment();
+                return NO_VALUE;
+            } finally {
+                for (int i = 0; i <= highestLocked; i++) {
+                    preds[i].lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the node of the key under its lock, then locks and validates
+     * its predecessors at each level before unlinking it.
+     * @param key
+     * @return
+     */
+    public int removeInt(int key) {
+        Node victim = null;
+        boolean isMarked = false;
+        int topLevel = -1;
+        int value = NO_VALUE;
+        Node[] preds = new Node[MAX_LEVEL + 1];
+        Node[] succs = new Node[MAX_LEVEL + 1];
+        for (;;) {
+            int levelFound = find(key, preds, succs);
+            if (!isMarked) {
+                if (levelFound == -1) {
+                    return NO_VALUE;
+                }
+                victim = succs[levelFound];
+                // a node still being linked is not in the map yet
+                if (!victim.fullyLinked || victim.topLevel != levelFound || victim.marked) {
+                    return NO_VALUE;
+                }
+                topLevel = victim.topLevel;
+                victim.lock.lock();
+                if (victim.marked) {
+                    victim.lock.unlock();
+                    return NO_VALUE;
+                }
+                victim.marked = true;
+                isMarked = true;
+                value = victim.value;
+            }
+            int highestLocked = -1;
+            try {
+                boolean valid = true;
+                for (int i = 0; valid && i <= topLevel; i++) {
+                    Node pred = preds[i];
+                    pred.lock.lock();
+                    highestLocked = i;
+                    valid = !pred.marked && pred.next.get(i) == victim;
+                }
+                if (!valid) {
+                    continue;
+                }
+                for (int i = topLevel; i >= 0; i--) {
+                    preds[i].next.set(i, victim.next.get(i));
+                }
+                victim.lock.unlock();
+                size.decrement();
+                return value;
+            } finally {
+                for (int i = 0; i <= highestLocked; i++) {
+                    preds[i].lock.unlock();
+                }
+            }
+        }
+    }
+
+    protected long[] mappings() {
+        long[] mappings = new long[16];
+        int count = 0;
+        for (Node curr = head.next.get(0); curr != tail; curr = curr.next.get(0)) {
+            if (curr.fullyLinked && !curr.marked) {
+                if (count == mappings.length) {
+                    mappings = Arrays.copyOf(mappings, 2 * count);
+                }
+                mappings[count++] = pack(curr.key, curr.value);
+            }
+        }
+        return Arrays.copyOf(mappings, count);
+    }
+
+    /**
+     * Returns the number of mappings from the striped counter.
+     * @return
+     */
+    public int size() {
+        return (int) size.sum();
+    }
+
+    /**
+     * Clears the skip-list by setting the head node to point to the tail
+     * node. Must not run concurrently with the updates.
+     */
+    public void clear() {
+        for (int i = 0; i <= MAX_LEVEL; i++) {
+            head.next.set(i, tail);
+        }
+        level = 0;
+        size.reset();
+    }
+
+    /**
+     * Class Node of the list, holding a mapping.
+     */
+    private static final class Node {
+        final ReentrantLock lock = new ReentrantLock();
+        final int key;
+        volatile int value;
+        final AtomicReferenceArray<Node> next;
+        final int topLevel;
+        volatile boolean marked = false;
+        volatile boolean fullyLinked = false;
+
+        Node(int key, int value, int topLevel) {
+            this.key = key;
+            this.value = value;
+            this.next = new AtomicReferenceArray<Node>(topLevel + 1);
+            this.topLevel = topLevel;
+        }
+    }
+}
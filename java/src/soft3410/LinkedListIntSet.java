@@ -1,10 +1,15 @@
 package soft3410;
 
+import java.util.Collection;
+
+import contention.abstractions.BulkLoadAlg;
+
 /**
  * A basic linked list implementation of a set.
  */
 public class LinkedListIntSet
-    extends contention.abstractions.AbstractCompositionalIntSet {
+    extends contention.abstractions.AbstractCompositionalIntSet
+    implements BulkLoadAlg {
   final private Node head;
   final private Node tail;
 
@@ -51,6 +56,50 @@ public class LinkedListIntSet
     return true;
   }
 
+  /**
+   * Add the ints of a collection, in a single
+   * traversal of the list as the batch is sorted first.
+   *
+   * @param c  The ints to be added
+   * @return true if the set changed
+   */
+  public boolean addAll(Collection<Integer> c) {
+    int[] values = sortedKeys(c);
+    boolean changed = false;
+    Node predecessor = head;
+    for (int value : values) {
+      predecessor = findPredecessor(predecessor, value);
+      Node current = predecessor.getNext();
+      if (current.getValue() != value) {
+        predecessor.setNext(new Node(value, current));
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Remove the ints of a collection, in a single
+   * traversal of the list as the batch is sorted first.
+   *
+   * @param c  The ints to be removed
+   * @return true if the set changed
+   */
+  public boolean removeAll(Collection<Integer> c) {
+    int[] values = sortedKeys(c);
+    boolean changed = false;
+    Node predecessor = head;
+    for (int value : values) {
+      predecessor = findPredecessor(predecessor, value);
+      Node current = predecessor.getNext();
+      if (current.getValue() == value) {
+        predecessor.setNext(current.getNext());
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
   /**
    * Check if an int is a member of the set.
    * 
@@ -87,8 +136,16 @@ public class LinkedListIntSet
    * @return the Node containing the largest value smaller than the search value
    */
   private Node findPredecessor(int value) {
-    Node predecessor = head;
-    Node curr = head.getNext();
+    return findPredecessor(head, value);
+  }
+
+  /**
+   * Find the predecessor to the node that would contain the given value,
+   * starting from a node known to contain a smaller value.
+   */
+  private Node findPredecessor(Node from, int value) {
+    Node predecessor = from;
+    Node curr = from.getNext();
     while (true) {
       // Found a match, so return the predecessor
       if (curr.value >= value) {
@@ -99,6 +156,20 @@ public class LinkedListIntSet
     }
   }
 
+  /**
+   * Replace the content of the set with sorted ints, linked from the last
+   * one backwards in a single pass.
+   *
+   * @param keys  The distinct ints to be loaded, in ascending order
+   */
+  public void bulkLoad(int[] keys) {
+    Node next = tail;
+    for (int i = keys.length - 1; i >= 0; i--) {
+      next = new Node(keys[i], next);
+    }
+    head.setNext(next);
+  }
+
   /**
    * Empty the set.
    */
@@ -0,0 +1,450 @@
+/*
+ *  Based on the marker-node deletion scheme of
+ *  "ConcurrentSkipListMap.java" by Doug Lea, JSR-166,
+ *  and on
+ *  T. Harris. A pragmatic implementation of non-blocking linked-lists.
+ *  In DISC, 2001.
+ */
+
+package soft3410;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import contention.abstractions.BulkLoadAlg;
+import contention.abstractions.CompositionalIterator;
+import contention.abstractions.MemoryReclaimer;
+import contention.abstractions.ReclaimerFactory;
+import contention.abstractions.ReclamationAlg;
+import contention.abstractions.SnapshotAlg;
+
+/**
+ * A lock-free linked list implementation of a set.
+ *
+ * A node is removed by first marking it deleted, then appending a marker
+ * node behind it so that no insertion can succeed after it, and finally
+ * unlinking both. Unlinked nodes are retired to a memory reclaimer and
+ * recycled by later insertions.
+ *
+ * A traversal protects each node before accessing it, then checks that its
+ * predecessor is still live and still points to it: the predecessor has no
+ * marker yet, so the node was reachable when protected and cannot have been
+ * reclaimed. The check is redundant with epochs but required with hazard
+ * pointers.
+ *
+ * Operations report the nodes they change or rely on to the running
+ * snapshot, if any, so that snapshot iterators need not block the updates.
+ */
+public class LockFreeLinkedListIntSet
+    extends contention.abstractions.AbstractCompositionalIntSet
+    implements BulkLoadAlg, ReclamationAlg, SnapshotAlg {
+
+  static boolean isDeleted(int state) {
+    return !SnapCollector.isLive(state);
+  }
+
+  /** The hazard slots of a traversal */
+  static final int PREDECESSOR = 0;
+  static final int CURRENT = 1;
+  static final int SUCCESSOR = 2;
+
+  final private Node head;
+  final private Node tail;
+  final private MemoryReclaimer<Node> reclaimer;
+  /** The number of elements, updated after the linearizing CASes */
+  final private LongAdder size = new LongAdder();
+  /** The collector of the running snapshot, if active */
+  final private AtomicReference<SnapCollector> snapPointer =
+      new AtomicReference<SnapCollector>(SnapCollector.INACTIVE);
+
+  public LockFreeLinkedListIntSet() {
+    head = new Node();
+    head.init(Integer.MIN_VALUE, null, false);
+    tail = new Node();
+    tail.init(Integer.MAX_VALUE, null, false);
+    head.next = tail;
+    reclaimer = ReclaimerFactory.newReclaimer();
+  }
+
+  /**
+   * Add a new int to the set.
+   *
+   * @param value  The new int to be added
+   * @return false if the int already exists in the set
+   */
+  public boolean addInt(int value) {
+    reclaimer.enter();
+    try {
+      Node node = null;
+      restart:
+      for (;;) {
+        Node predecessor = head;
+        Node current = predecessor.next;
+        for (;;) {
+          reclaimer.protect(CURRENT, current);
+          if (current != predecessor.next || predecessor.isDeleted()) {
+            continue restart;
+          }
+          Node successor = current.next;
+          int state = current.state;
+          if (isDeleted(state)) {
+            observed(current, value, state);
+            helpDelete(predecessor, current, successor);
+            continue restart;
+          }
+          if (current.value >= value) {
+            if (current.value == value) {
+              if (node != null) {
+                // never published, nobody else can refer to it
+                reclaimer.retire(node);
+              }
+              observed(current, value, state);
+              return false;
+            }
+            if (node == null) {
+              node = newNode(value, current, false);
+            } else {
+              node.next = current;
+            }
+            // read while the node is still private: once published, it
+            // may be removed and recycled before it gets reported
+            int initial = node.state;
+            if (predecessor.casNext(current, node)) {
+              size.increment();
+              report(node, value, initial);
+              return true;
+            }
+            continue restart;
+          }
+          reclaimer.protect(PREDECESSOR, current);
+          predecessor = current;
+          current = successor;
+        }
+      }
+    } finally {
+      reclaimer.exit();
+    }
+  }
+
+  /**
+   * Remove an int from the set.
+   *
+   * @param value  The int to be removed
+   * @return false if the int did not exist in the set
+   */
+  public boolean removeInt(int value) {
+    reclaimer.enter();
+    try {
+      restart:
+      for (;;) {
+        Node predecessor = head;
+        Node current = predecessor.next;
+        for (;;) {
+          reclaimer.protect(CURRENT, current);
+          if (current != predecessor.next || predecessor.isDeleted()) {
+            continue restart;
+          }
+          Node successor = current.next;
+          int state = current.state;
+          if (isDeleted(state)) {
+            observed(current, value, state);
+            helpDelete(predecessor, current, successor);
+            continue restart;
+          }
+          if (current.value > value || current == tail) {
+            return false;
+          }
+          if (current.value == value) {
+            if (!current.casState(state, state + 1)) {
+              continue restart;
+            }
+            size.decrement();
+            observed(current, value, state + 1);
+            // try to unlink it right away, otherwise leave it to the
+            // next traversal passing by
+            helpDelete(predecessor, current, successor);
+            helpDelete(predecessor, current, current.next);
+            return true;
+          }
+          reclaimer.protect(PREDECESSOR, current);
+          predecessor = current;
+          current = successor;
+        }
+      }
+    } finally {
+      reclaimer.exit();
+    }
+  }
+
+  /**
+   * Check if an int is a member of the set.
+   *
+   * @param value  The int to be checked
+   * @return true if value exists in the set
+   */
+  public boolean containsInt(int value) {
+    reclaimer.enter();
+    try {
+      restart:
+      for (;;) {
+        Node predecessor = head;
+        Node current = predecessor.next;
+        for (;;) {
+          reclaimer.protect(CURRENT, current);
+          if (current != predecessor.next || predecessor.isDeleted()) {
+            continue restart;
+          }
+          Node successor = current.next;
+          int state = current.state;
+          if (isDeleted(state)) {
+            observed(current, value, state);
+            helpDelete(predecessor, current, successor);
+            continue restart;
+          }
+          if (current.value >= value) {
+            if (current.value == value) {
+              observed(current, value, state);
+              return true;
+            }
+            return false;
+          }
+          reclaimer.protect(PREDECESSOR, current);
+          predecessor = current;
+          current = successor;
+        }
+      }
+    } finally {
+      reclaimer.exit();
+    }
+  }
+
+  /**
+   * Helps unlinking the deleted node current, whose predecessor and
+   * successor were read as given: appends a marker behind it if it has
+   * none, otherwise unlinks both the node and its marker.
+   */
+  private void helpDelete(Node predecessor, Node current, Node successor) {
+    reclaimer.protect(SUCCESSOR, successor);
+    // current is not a marker, so if the predecessor still points to it,
+    // the predecessor and current are reachable, and so is the successor
+    if (successor == current.next && current == predecessor.next) {
+      if (successor == null || !successor.marker) {
+        Node marker = newNode(0, successor, true);
+        if (!current.casNext(successor, marker)) {
+          reclaimer.retire(marker);
+        }
+      } else if (predecessor.casNext(current, successor.next)) {
+        reclaimer.retire(current);
+        reclaimer.retire(successor);
+      }
+    }
+  }
+
+  /**
+   * Reports the state of a node of the value to the running snapshot, if
+   * any, as an operation changed or relied on it. A deleted node of
+   * another value is not relevant to the operation.
+   */
+  private void observed(Node node, int value, int state) {
+    if (node.value == value) {
+      report(node, value, state);
+    }
+  }
+
+  /**
+   * Reports a state of a node of the value to the running snapshot, if
+   * any, without reading the node.
+   */
+  private void report(Node node, int value, int state) {
+    SnapCollector collector = snapPointer.get();
+    if (collector.isActive()) {
+      collector.report(node, value, state);
+    }
+  }
+
+  /**
+   * Returns an iterator over a snapshot taken while the updates go on.
+   * The iterators running at the same time share the snapshot and help
+   * collecting its nodes.
+   */
+  public CompositionalIterator<Integer> snapshotIterator() {
+    SnapCollector collector = SnapCollector.acquire(snapPointer);
+    reclaimer.enter();
+    try {
+      collect(collector);
+    } finally {
+      reclaimer.exit();
+    }
+    collector.deactivate();
+    return collector.iterator();
+  }
+
+  /**
+   * Adds the live nodes of the list to the collector, until another
+   * iterator ends the collection.
+   */
+  private void collect(SnapCollector collector) {
+    restart:
+    for (;;) {
+      Node predecessor = head;
+      Node current = predecessor.next;
+      while (current != tail) {
+        reclaimer.protect(CURRENT, current);
+        if (current != predecessor.next || predecessor.isDeleted()) {
+          continue restart;
+        }
+        Node successor = current.next;
+        int state = current.state;
+        if (isDeleted(state)) {
+          helpDelete(predecessor, current, successor);
+          // the predecessor is checked again before going on
+          current = predecessor.next;
+          continue;
+        }
+        if (!collector.addNode(current, current.value, state)) {
+          return;
+        }
+        reclaimer.protect(PREDECESSOR, current);
+        predecessor = current;
+        current = successor;
+      }
+      return;
+    }
+  }
+
+  /**
+   * Returns a node recycled by the reclaimer, or a new one.
+   */
+  private Node newNode(int value, Node next, boolean marker) {
+    Node node = reclaimer.allocate();
+    if (node == null) {
+      node = new Node();
+    }
+    node.init(value, next, marker);
+    return node;
+  }
+
+  /**
+   * Returns the size of the set from the striped counter. In linearizable
+   * mode, counts the keys of a snapshot instead.
+   *
+   * @return the number of ints in the set
+   */
+  public int size() {
+    if (!linearizableSize) {
+      return (int) size.sum();
+    }
+    int size = 0;
+    CompositionalIterator<Integer> iterator = snapshotIterator();
+    while (iterator.hasNext()) {
+      iterator.next();
+      size++;
+    }
+    return size;
+  }
+
+  /**
+   * Replace the content of the set with sorted ints, linked from the last
+   * one backwards in a single pass.
+   *
+   * @param keys  The distinct ints to be loaded, in ascending order
+   */
+  public void bulkLoad(int[] keys) {
+    Node next = tail;
+    for (int i = keys.length - 1; i >= 0; i--) {
+      next = newNode(keys[i], next, false);
+    }
+    head.next = next;
+    size.reset();
+    size.add(keys.length);
+  }
+
+  /**
+   * Empty the set.
+   */
+  public void clear() {
+    head.next = tail;
+    size.reset();
+  }
+
+  public MemoryReclaimer<?> getReclaimer() {
+    return reclaimer;
+  }
+
+  /**
+   * Goes halfway through the list, protecting the nodes as containsInt
+   * does, and runs stall on the node reached.
+   */
+  public void stallInTraversal(Runnable stall) {
+    reclaimer.enter();
+    try {
+      restart:
+      for (;;) {
+        long steps = size.sum() / 2;
+        Node predecessor = head;
+        Node current = predecessor.next;
+        for (;;) {
+          reclaimer.protect(CURRENT, current);
+          if (current != predecessor.next || predecessor.isDeleted()) {
+            continue restart;
+          }
+          Node successor = current.next;
+          if (isDeleted(current.state)) {
+            helpDelete(predecessor, current, successor);
+            continue restart;
+          }
+          if (steps-- <= 0 || current == tail) {
+            stall.run();
+            return;
+          }
+          reclaimer.protect(PREDECESSOR, current);
+          predecessor = current;
+          current = successor;
+        }
+      }
+    } finally {
+      reclaimer.exit();
+    }
+  }
+
+  static final class Node {
+
+    private static final AtomicReferenceFieldUpdater<Node, Node> nextUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+    private static final AtomicIntegerFieldUpdater<Node> stateUpdater =
+        AtomicIntegerFieldUpdater.newUpdater(Node.class, "state");
+
+    /** Not final, as nodes are recycled */
+    int value;
+    volatile Node next;
+    /** The version of the node, even while live and odd once deleted */
+    volatile int state;
+    boolean marker;
+
+    /**
+     * (Re)initializes the node before it gets published.
+     */
+    void init(int value, Node next, boolean marker) {
+      this.value = value;
+      this.marker = marker;
+      // the next even version, so that versions grow across recycling
+      this.state = (state | 1) + 1;
+      this.next = next;
+    }
+
+    boolean casNext(Node expected, Node update) {
+      return nextUpdater.compareAndSet(this, expected, update);
+    }
+
+    boolean isDeleted() {
+      return LockFreeLinkedListIntSet.isDeleted(state);
+    }
+
+    boolean casState(int expected, int update) {
+      return stateUpdater.compareAndSet(this, expected, update);
+    }
+  }
+
+}
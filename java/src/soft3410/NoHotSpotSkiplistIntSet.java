@@ -0,0 +1,648 @@
+/*
+ *  Based on
+ *  T. Crain, V. Gramoli, M. Raynal. No hot spot non-blocking skip list.
+ *  In ICDCS, 2013,
+ *  Synchrobench's source code, v1.1.0-alpha
+ *  "NonBlockingFriendlySkipListMap.java"
+ *  https://github.com/gramoli/synchrobench/blob/master/java/src/skiplists/lockfree/NonBlockingFriendlySkipListMap.java
+ *  by Tyler Crain and Vincent Gramoli.
+ */
+
+package soft3410;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+import contention.abstractions.BulkLoadAlg;
+import contention.abstractions.CompositionalIterator;
+import contention.abstractions.CompositionalRangeQuery;
+import contention.abstractions.MaintenanceAlg;
+import contention.abstractions.SnapshotAlg;
+
+/**
+ * A contention-friendly non-blocking skip-list implementation of an int set.
+ *
+ * Updates only touch the bottom level: an insertion links a new node there
+ * or revives a logically deleted one, and a removal only marks its node
+ * deleted. A maintenance thread physically removes the deleted nodes and
+ * rebuilds the index levels above the bottom level, so that the upper
+ * levels are never a hot spot for the application threads.
+ *
+ * The range queries and the linearizable size read a snapshot collected
+ * while the updates go on, so that they never block the updates.
+ */
+public class NoHotSpotSkiplistIntSet
+        extends contention.abstractions.AbstractCompositionalIntSet
+        implements BulkLoadAlg, MaintenanceAlg, CompositionalRangeQuery, SnapshotAlg {
+
+    /**
+     * Set on the state of a deleted node by the maintenance thread only, a
+     * removed node cannot be revived. The rest of the state is a version,
+     * even while the node is live and odd once deleted, which no number of
+     * updates carries into this bit.
+     */
+    static final long REMOVED = 1L << 62;
+
+    private static final AtomicLongFieldUpdater<NoHotSpotSkiplistIntSet> structModsUpdater =
+            AtomicLongFieldUpdater.newUpdater(NoHotSpotSkiplistIntSet.class, "structMods");
+
+    /** The maximum number of index levels */
+    static final int MAX_LEVEL = 31;
+    /** The pause between two maintenance passes, in milliseconds */
+    static final long MAINTENANCE_DELAY = 1;
+
+    /** The first element of the bottom level */
+    final private Node head;
+    /** The last element of the bottom level */
+    final private Node tail;
+    /** The top-left index node, replaced by each maintenance pass */
+    private volatile IndexNode index;
+    /** The collector of the running snapshot, if active */
+    final private AtomicReference<SnapCollector> snapPointer =
+            new AtomicReference<SnapCollector>(SnapCollector.INACTIVE);
+    /** The number of elements, updated after the linearizing CASes */
+    final private LongAdder size = new LongAdder();
+    /**
+     * The number of nodes linked or deleted, by which the maintenance
+     * thread tells whether the bottom level changed since its last pass.
+     */
+    final private LongAdder changes = new LongAdder();
+
+    private MaintenanceThread maintenance;
+    /**
+     * The number of physical removals since the last clear or bulk load,
+     * written by the maintenance thread only and read by the others.
+     */
+    private volatile long structMods = 0;
+
+    public NoHotSpotSkiplistIntSet() {
+        this.head = new Node(Integer.MIN_VALUE, null);
+        this.tail = new Node(Integer.MAX_VALUE, null);
+        this.head.next = tail;
+        this.index = new IndexNode(head, null, null);
+        startMaintenance();
+    }
+
+    /**
+     * Goes down the index and returns the node of the bottom level where
+     * the search for the value starts. Index nodes whose node is removed
+     * are passed over, as the bottom level may have changed behind them.
+     * @param value
+     * @return
+     */
+    private Node findStart(int value) {
+        IndexNode idx = index;
+        for (;;) {
+            IndexNode right = idx.right;
+            while (right != null && right.node.key < value) {
+                if (!isRemoved(right.node.state)) {
+                    idx = right;
+                }
+                right = right.right;
+            }
+            if (idx.down == null) {
+                return idx.node;
+            }
+            idx = idx.down;
+        }
+    }
+
+    /**
+     * Inserts a node at the bottom level, or revives the deleted node of
+     * the value.
+     * @param value
+     * @return
+     */
+    public boolean addInt(int value) {
+        boolean added = doAddInt(value);
+        if (added) {
+            size.increment();
+        }
+        return added;
+    }
+
+    /**
+     * Adds the values of a batch in increasing order.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean addAll(Collection<Integer> c) {
+        boolean changed = false;
+        for (int value : sortedKeys(c)) {
+            if (doAddInt(value)) {
+                size.increment();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the values of a batch in increasing order.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean removeAll(Collection<Integer> c) {
+        boolean changed = false;
+        for (int value : sortedKeys(c)) {
+            if (doRemoveInt(value)) {
+                size.decrement();
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean doAddInt(int value) {
+        restart:
+        for (;;) {
+            Node pred = findStart(value);
+            Node curr = pred.next;
+            for (;;) {
+                if (curr.marker) {
+                    // pred is being removed
+                    continue restart;
+                }
+                if (isRemoved(curr.state)) {
+                    helpRemove(pred, curr);
+                    continue restart;
+                }
+                if (curr.key < value) {
+                    pred = curr;
+                    curr = curr.next;
+                    continue;
+                }
+                if (curr.key == value) {
+                    long state = curr.state;
+                    if (SnapCollector.isLive(state)) {
+                        observed(curr, value, state);
+                        return false;
+                    }
+                    if (!isRemoved(state) && curr.casState(state, state + 1)) {
+                        observed(curr, value, state + 1);
+                        return true;
+                    }
+                    continue restart;
+                }
+                Node node = new Node(value, curr);
+                if (pred.casNext(curr, node)) {
+                    changes.increment();
+                    observed(node, value, node.state);
+                    return true;
+                }
+                continue restart;
+            }
+        }
+    }
+
+    /**
+     * Marks the node of the value deleted, leaving its physical removal to
+     * the maintenance thread.
+     * @param value
+     * @return
+     */
+    public boolean removeInt(int value) {
+        boolean removed = doRemoveInt(value);
+        if (removed) {
+            size.decrement();
+        }
+        return removed;
+    }
+
+    private boolean doRemoveInt(int value) {
+        restart:
+        for (;;) {
+            Node pred = findStart(value);
+            Node curr = pred.next;
+            for (;;) {
+                if (curr.marker) {
+                    continue restart;
+                }
+                if (isRemoved(curr.state)) {
+                    helpRemove(pred, curr);
+                    continue restart;
+                }
+                if (curr.key < value) {
+                    pred = curr;
+                    curr = curr.next;
+                    continue;
+                }
+                if (curr.key != value) {
+                    return false;
+                }
+                long state = curr.state;
+                if (!SnapCollector.isLive(state)) {
+                    observed(curr, value, state);
+                    return false;
+                }
+                if (curr.casState(state, state + 1)) {
+                    changes.increment();
+                    observed(curr, value, state + 1);
+                    return true;
+                }
+                continue restart;
+            }
+        }
+    }
+
+    /**
+     * Goes down the index then along the bottom level to check if the
+     * value exists and is not deleted.
+     * @param value
+     * @return
+     */
+    public boolean containsInt(int value) {
+        Node curr = findStart(value);
+        while (curr.key < value) {
+            curr = curr.next;
+        }
+        if (curr.key != value) {
+            return false;
+        }
+        long state = curr.state;
+        observed(curr, value, state & ~REMOVED);
+        return SnapCollector.isLive(state);
+    }
+
+    static boolean isRemoved(long state) {
+        return (state & REMOVED) != 0;
+    }
+
+    /**
+     * Reports the state of a node to the running snapshot, if any, as an
+     * operation changed or relied on it.
+     */
+    private void observed(Node node, int value, long state) {
+        SnapCollector collector = snapPointer.get();
+        if (collector.isActive()) {
+            collector.report(node, value, state);
+        }
+    }
+
+    /**
+     * Returns an iterator over a snapshot taken while the updates go on.
+     */
+    public CompositionalIterator<Integer> snapshotIterator() {
+        return collect(Integer.MIN_VALUE + 1, Integer.MAX_VALUE).iterator();
+    }
+
+    /**
+     * Collects a snapshot of the set while the updates go on, traversing
+     * the values in [lo, hi) only. The snapshots running at the same time
+     * share a collector, which may thus hold other values too, but only
+     * the one that ends the collection covered its range: the others start
+     * over.
+     * @param lo
+     * @param hi
+     * @return the deactivated collector
+     */
+    private SnapCollector collect(int lo, int hi) {
+        retry:
+        for (;;) {
+            SnapCollector collector = SnapCollector.acquire(snapPointer);
+            for (Node curr = findStart(lo); curr.key < hi; curr = curr.next) {
+                long state = curr.state;
+                if (curr.key >= lo && !curr.marker && SnapCollector.isLive(state)
+                        && !collector.addNode(curr, curr.key, state)) {
+                    continue retry;
+                }
+            }
+            if (collector.deactivate()) {
+                return collector;
+            }
+        }
+    }
+
+    /**
+     * Returns the sorted values in [lo, hi) of a snapshot of the set.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    private int[] snapshot(int lo, int hi) {
+        int[] keys = collect(lo, hi).keys();
+        return Arrays.copyOfRange(keys, lowerBound(keys, lo), lowerBound(keys, hi));
+    }
+
+    /**
+     * Returns the position of the first key not lower than the value.
+     */
+    private static int lowerBound(int[] keys, int value) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Completes the removal of a node marked removed: appends a marker
+     * behind it so that no insertion succeeds after it, then unlinks both.
+     * @param pred
+     * @param node
+     */
+    private void helpRemove(Node pred, Node node) {
+        Node succ = node.next;
+        if (!succ.marker) {
+            Node marker = new Node(succ);
+            if (!node.casNext(succ, marker)) {
+                return;
+            }
+            succ = marker;
+        }
+        pred.casNext(node, succ.next);
+    }
+
+    /**
+     * Counts the values in [lo, hi) of a snapshot, so that the updates go
+     * on meanwhile.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int rangeCount(int lo, int hi) {
+        return snapshot(lo, hi).length;
+    }
+
+    /**
+     * Collects the values in [lo, hi) of a snapshot, so that the updates
+     * go on meanwhile.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int[] rangeScan(int lo, int hi) {
+        return snapshot(lo, hi);
+    }
+
+    /**
+     * Returns the value of the given rank in a snapshot of the whole set.
+     * @param rank
+     * @return
+     */
+    public int select(int rank) {
+        if (rank < 0) {
+            throw new NoSuchElementException("Negative rank: " + rank);
+        }
+        int[] keys = collect(Integer.MIN_VALUE + 1, Integer.MAX_VALUE).keys();
+        if (rank >= keys.length) {
+            throw new NoSuchElementException("No value of rank " + rank);
+        }
+        return keys[rank];
+    }
+
+    /**
+     * Returns the number of elements from the striped counter. In
+     * linearizable mode, the elements of a snapshot are counted instead.
+     * @return
+     */
+    public int size() {
+        if (!linearizableSize) {
+            return (int) size.sum();
+        }
+        return collect(Integer.MIN_VALUE + 1, Integer.MAX_VALUE).keys().length;
+    }
+
+    /**
+     * Replaces the content of the bottom level with sorted values, linked
+     * from the last one backwards in a single pass, then indexes it before
+     * the maintenance thread restarts.
+     * @param keys the distinct values to be loaded, in ascending order
+     */
+    public void bulkLoad(int[] keys) {
+        stopMaintenance();
+        Node next = tail;
+        for (int i = keys.length - 1; i >= 0; i--) {
+            next = new Node(keys[i], next);
+        }
+        head.next = next;
+        size.reset();
+        size.add(keys.length);
+        structMods = 0;
+        startMaintenance();
+    }
+
+    /**
+     * Clears the skip-list, stopping the maintenance thread while the
+     * head is relinked to the tail.
+     */
+    public void clear() {
+        stopMaintenance();
+        head.next = tail;
+        index = new IndexNode(head, null, null);
+        size.reset();
+        structMods = 0;
+        startMaintenance();
+    }
+
+    /**
+     * Indexes the bottom level, then starts the thread maintaining it.
+     */
+    private void startMaintenance() {
+        maintenance = new MaintenanceThread();
+        index = maintenance.buildIndex(maintenance.removeDeleted());
+        maintenance.start();
+    }
+
+    public boolean stopMaintenance() {
+        MaintenanceThread thread = maintenance;
+        if (thread == null) {
+            return false;
+        }
+        thread.stop = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        maintenance = null;
+        return true;
+    }
+
+    public long getStructMods() {
+        return structMods;
+    }
+
+    /**
+     * Returns the number of nodes of the bottom level, including the
+     * deleted ones not removed yet.
+     * @return
+     */
+    public int numNodes() {
+        int count = 0;
+        Node curr = head.next;
+        while (curr != tail) {
+            if (!curr.marker) {
+                count++;
+            }
+            curr = curr.next;
+        }
+        return count;
+    }
+
+    /**
+     * The maintenance thread, which removes the deleted nodes of the bottom
+     * level and publishes a new balanced index of the remaining ones,
+     * whenever nodes were linked or deleted since its previous pass.
+     */
+    private final class MaintenanceThread extends Thread {
+
+        volatile boolean stop = false;
+        /** The nodes of the bottom level, reused from pass to pass */
+        private Node[] nodes = new Node[1024];
+        /** The count of changes the current index reflects */
+        private long indexed = changes.sum();
+
+        MaintenanceThread() {
+            setDaemon(true);
+        }
+
+        public void run() {
+            while (!stop) {
+                // read before the pass, so that a change during the pass
+                // is handled by the next one
+                long seen = changes.sum();
+                if (seen != indexed) {
+                    indexed = seen;
+                    index = buildIndex(removeDeleted());
+                }
+                try {
+                    Thread.sleep(MAINTENANCE_DELAY);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Removes the deleted nodes of the bottom level and collects the
+         * remaining ones.
+         * @return the number of collected nodes
+         */
+        private int removeDeleted() {
+            int count = 0;
+            Node pred = head;
+            Node curr = pred.next;
+            while (curr != tail) {
+                // only this thread marks nodes removed and pred is never
+                // one of them, so curr is not a marker
+                long state = curr.state;
+                if (!SnapCollector.isLive(state) && !isRemoved(state)
+                        && curr.casState(state, state | REMOVED)) {
+                    // a single writer, so an ordered write is enough
+                    structModsUpdater.lazySet(NoHotSpotSkiplistIntSet.this,
+                            structMods + 1);
+                }
+                if (isRemoved(curr.state)) {
+                    helpRemove(pred, curr);
+                    curr = pred.next;
+                    continue;
+                }
+                if (count == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, 2 * count);
+                }
+                nodes[count++] = curr;
+                pred = curr;
+                curr = curr.next;
+            }
+            return count;
+        }
+
+        /**
+         * Builds a perfectly balanced index over the collected nodes, where
+         * each level holds every other node of the level below.
+         * @param count
+         * @return the top-left index node
+         */
+        private IndexNode buildIndex(int count) {
+            IndexNode[] below = null;
+            IndexNode top = null;
+            int stride = 2;
+            for (int level = 1; level <= MAX_LEVEL; level++) {
+                int size = count / stride;
+                IndexNode[] current = new IndexNode[size];
+                IndexNode right = null;
+                for (int j = size - 1; j >= 0; j--) {
+                    IndexNode down = (below == null) ? null : below[2 * j + 1];
+                    right = new IndexNode(nodes[(j + 1) * stride - 1], right, down);
+                    current[j] = right;
+                }
+                top = new IndexNode(head, right, top);
+                below = current;
+                if (size <= 1) {
+                    break;
+                }
+                stride *= 2;
+            }
+            Arrays.fill(nodes, 0, count, null);
+            return top;
+        }
+    }
+
+    /**
+     * Class IndexNode of the immutable index levels.
+     */
+    private static final class IndexNode {
+        final Node node;
+        final IndexNode right;
+        final IndexNode down;
+
+        IndexNode(Node node, IndexNode right, IndexNode down) {
+            this.node = node;
+            this.right = right;
+            this.down = down;
+        }
+    }
+
+    /**
+     * Class Node of the bottom level.
+     */
+    private static final class Node {
+
+        private static final AtomicReferenceFieldUpdater<Node, Node> nextUpdater =
+                AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+        private static final AtomicLongFieldUpdater<Node> stateUpdater =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "state");
+
+        final int key;
+        final boolean marker;
+        volatile Node next;
+        volatile long state = 0;
+
+        Node(int key, Node next) {
+            this.key = key;
+            this.marker = false;
+            this.next = next;
+        }
+
+        /**
+         * Creates a marker node, whose key keeps traversals going.
+         * @param next
+         */
+        Node(Node next) {
+            this.key = Integer.MIN_VALUE;
+            this.marker = true;
+            this.next = next;
+        }
+
+        boolean casNext(Node expected, Node update) {
+            return nextUpdater.compareAndSet(this, expected, update);
+        }
+
+        boolean casState(long expected, long update) {
+            return stateUpdater.compareAndSet(this, expected, update);
+        }
+    }
+}
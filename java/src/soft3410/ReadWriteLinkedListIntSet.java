@@ -1,11 +1,15 @@
 package soft3410;
+import java.util.Collection;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import contention.abstractions.BulkLoadAlg;
+
 /**
  * A coarse-graines locking linked list implementation of a set.
  */
 public class ReadWriteLinkedListIntSet
-    extends contention.abstractions.AbstractCompositionalIntSet {
+    extends contention.abstractions.AbstractCompositionalIntSet
+    implements BulkLoadAlg {
   final private Node head;
   final private Node tail;
   ReentrantReadWriteLock readWriteLock;
@@ -59,6 +63,60 @@ public class ReadWriteLinkedListIntSet
     return true;
   }
 
+  /**
+   * Add the ints of a collection under a single acquisition of the write lock, in a single
+   * traversal of the list as the batch is sorted first.
+   *
+   * @param c  The ints to be added
+   * @return true if the set changed
+   */
+  public boolean addAll(Collection<Integer> c) {
+    int[] values = sortedKeys(c);
+    boolean changed = false;
+    readWriteLock.writeLock().lock();
+    try {
+      Node predecessor = head;
+      for (int value : values) {
+        predecessor = findPredecessor(predecessor, value);
+        Node current = predecessor.getNext();
+        if (current.value != value) {
+          predecessor.setNext(new Node(value, current));
+          changed = true;
+        }
+      }
+      return changed;
+    } finally {
+      readWriteLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Remove the ints of a collection under a single acquisition of the write lock, in a single
+   * traversal of the list as the batch is sorted first.
+   *
+   * @param c  The ints to be removed
+   * @return true if the set changed
+   */
+  public boolean removeAll(Collection<Integer> c) {
+    int[] values = sortedKeys(c);
+    boolean changed = false;
+    readWriteLock.writeLock().lock();
+    try {
+      Node predecessor = head;
+      for (int value : values) {
+        predecessor = findPredecessor(predecessor, value);
+        Node current = predecessor.getNext();
+        if (current.value == value) {
+          predecessor.setNext(current.getNext());
+          changed = true;
+        }
+      }
+      return changed;
+    } finally {
+      readWriteLock.writeLock().unlock();
+    }
+  }
+
   /**
    * Check if an int is a member of the set.
    *
@@ -91,17 +149,45 @@ public class ReadWriteLinkedListIntSet
    */
   private Node findPredecessor(int value) {
     readWriteLock.readLock().lock();
-    Node current = head;
+    Node current = findPredecessor(head, value);
+    readWriteLock.readLock().unlock();
+    return current;
+  }
+
+  /**
+   * Find the predecessor to the node that would contain the given value,
+   * starting from a node known to contain a smaller value.
+   * The caller must hold the write lock.
+   */
+  private Node findPredecessor(Node current, int value) {
     while (true) {
       // Found a match in the next node, so return its predecessor
       if (current.getNext().value >= value) {
-        readWriteLock.readLock().unlock();
         return current;
       }
       current = current.getNext();
     }
   }
 
+  /**
+   * Replace the content of the set with sorted ints, linked from the last
+   * one backwards in a single pass.
+   *
+   * @param keys  The distinct ints to be loaded, in ascending order
+   */
+  public void bulkLoad(int[] keys) {
+    readWriteLock.writeLock().lock();
+    try {
+      Node next = tail;
+      for (int i = keys.length - 1; i >= 0; i--) {
+        next = new Node(keys[i], next);
+      }
+      head.setNext(next);
+    } finally {
+      readWriteLock.writeLock().unlock();
+    }
+  }
+
   /**
    * Empty the set.
    */
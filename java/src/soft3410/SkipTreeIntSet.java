@@ -0,0 +1,505 @@
+/*
+ *  Based on
+ *  X. Messeguer. Skip trees, an alternative data structure to skip lists
+ *  in a concurrent approach. RAIRO Theoretical Informatics and
+ *  Applications, 31(3):251-269, 1997,
+ *  and
+ *  M. Spiegel, P. F. Reynolds Jr. Lock-free multiway search trees.
+ *  In ICPP, 2010.
+ */
+
+package soft3410;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
+
+import contention.abstractions.CompositionalRangeQuery;
+import contention.locks.LockFactory;
+
+/**
+ * A coarse-grained locking skip-tree implementation of an int set.
+ *
+ * A skip tree is a skip list whose levels are packed into fat nodes: each
+ * key of height h appears at levels 0 to h and, below level h, starts a
+ * new node. A node thus holds a run of consecutive keys in one array, and
+ * at index levels the child pointer of each key in another, so that a
+ * lookup scans contiguous keys and costs about one node per level rather
+ * than one node per hop.
+ */
+public class SkipTreeIntSet
+        extends contention.abstractions.AbstractCompositionalIntSet
+        implements CompositionalRangeQuery {
+
+    /** The expected number of keys per node */
+    static final int FANOUT = 16;
+    /** The maximum number of levels */
+    static final int MAX_LEVEL = 8;
+
+    /** The top node, whose first key is the Integer.MIN_VALUE sentinel */
+    private Node root;
+    /** The level of the root */
+    private int level;
+    /** The number of keys, updated under the lock */
+    private int size = 0;
+    /** The lock protecting the whole tree */
+    final private Lock lock;
+
+    public SkipTreeIntSet() {
+        this.lock = LockFactory.newLock();
+        this.root = newLeaf();
+        this.level = 0;
+    }
+
+    private static Node newLeaf() {
+        Node leaf = new Node(false);
+        leaf.insert(0, Integer.MIN_VALUE, null);
+        return leaf;
+    }
+
+    /**
+     * Random level int generator, where a key rises one more level with
+     * probability 1/FANOUT, at most one level above the current root.
+     * @return
+     */
+    private int randomLevel() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int max = Math.min(MAX_LEVEL, level + 1);
+        int height = 0;
+        while (height < max && random.nextInt(FANOUT) == 0) {
+            height++;
+        }
+        return height;
+    }
+
+    /**
+     * Adds a value under the lock.
+     * @param value
+     * @return
+     */
+    public boolean addInt(int value) {
+        lock.lock();
+        try {
+            return insert(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the values of a batch under a single acquisition of the lock.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean addAll(Collection<Integer> c) {
+        int[] values = sortedKeys(c);
+        boolean changed = false;
+        lock.lock();
+        try {
+            for (int value : values) {
+                changed |= insert(value);
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the node and position of the value at each level, inserts it
+     * at each level up to its height, and splits the nodes below its
+     * height so that the value starts a new node there. The tree only grows
+     * a level once the value is known to be absent.
+     * The caller must hold the lock.
+     * @param value
+     * @return
+     */
+    private boolean insert(int value) {
+        if (value == Integer.MIN_VALUE) {
+            return false;
+        }
+        int height = randomLevel();
+        Node[] path = new Node[level + 2];
+        int[] positions = new int[level + 2];
+        Node node = root;
+        for (int i = level; i >= 0; i--) {
+            int position = node.find(value);
+            if (node.keys[position] == value) {
+                return false;
+            }
+            path[i] = node;
+            positions[i] = position;
+            if (i > 0) {
+                node = node.children[position];
+            }
+        }
+        if (height > level) {
+            Node newRoot = new Node(true);
+            newRoot.insert(0, Integer.MIN_VALUE, root);
+            root = newRoot;
+            level++;
+            path[level] = newRoot;
+            positions[level] = 0;
+        }
+        Node child = null;
+        for (int i = 0; i <= height; i++) {
+            node = path[i];
+            int position = positions[i] + 1;
+            node.insert(position, value, child);
+            if (i < height) {
+                child = node.split(position);
+            }
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a value under the lock.
+     * @param value
+     * @return
+     */
+    public boolean removeInt(int value) {
+        lock.lock();
+        try {
+            return delete(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the values of a batch under a single acquisition of the lock.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean removeAll(Collection<Integer> c) {
+        int[] values = sortedKeys(c);
+        boolean changed = false;
+        lock.lock();
+        try {
+            for (int value : values) {
+                changed |= delete(value);
+            }
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the highest level holding the value and removes it there. Below
+     * that level, the node the value starts is merged into its left
+     * sibling.
+     * The caller must hold the lock.
+     * @param value
+     * @return
+     */
+    private boolean delete(int value) {
+        // the sentinel is not an element
+        if (value == Integer.MIN_VALUE) {
+            return false;
+        }
+        Node node = root;
+        for (int i = level; i >= 0; i--) {
+            int position = node.find(value);
+            if (node.keys[position] == value) {
+                if (i > 0) {
+                    Node left = node.children[position - 1];
+                    Node right = node.children[position];
+                    node.remove(position);
+                    merge(left, right, i - 1);
+                } else {
+                    node.remove(position);
+                }
+                while (level > 0 && root.size == 1) {
+                    root = root.children[0];
+                    level--;
+                }
+                size--;
+                return true;
+            }
+            if (i > 0) {
+                node = node.children[position];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the node right, whose first key is being removed, into its
+     * left sibling at the given level, then does the same at the levels
+     * below.
+     */
+    private void merge(Node left, Node right, int level) {
+        for (int i = level; i >= 0; i--) {
+            Node leftLast = (i > 0) ? left.children[left.size - 1] : null;
+            Node rightFirst = (i > 0) ? right.children[0] : null;
+            left.append(right, 1);
+            if (i == 0) {
+                left.next = right.next;
+            }
+            left = leftLast;
+            right = rightFirst;
+        }
+    }
+
+    /**
+     * Goes down the levels, scanning the keys of a single node per level,
+     * to check if the value exists in the skip tree.
+     * @param value
+     * @return
+     */
+    public boolean containsInt(int value) {
+        if (value == Integer.MIN_VALUE) {
+            return false;
+        }
+        lock.lock();
+        try {
+            Node node = root;
+            for (int i = level; i > 0; i--) {
+                int position = node.find(value);
+                if (node.keys[position] == value) {
+                    return true;
+                }
+                node = node.children[position];
+            }
+            return (node.keys[node.find(value)] == value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of keys of the skip tree.
+     * @return
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clears the skip tree, leaving a single leaf holding the sentinel.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            root = newLeaf();
+            level = 0;
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the leaf holding the largest key lower than or equal to the
+     * value, where the keys not lower than the value start.
+     * @param value
+     * @return
+     */
+    private Node findLeaf(int value) {
+        Node node = root;
+        for (int i = level; i > 0; i--) {
+            node = node.children[node.find(value)];
+        }
+        return node;
+    }
+
+    /**
+     * Counts the keys in [lo, hi) along the leaves.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int rangeCount(int lo, int hi) {
+        lock.lock();
+        try {
+            int count = 0;
+            Node first = leftmostLeaf();
+            for (Node node = findLeaf(lo); node != null; node = node.next) {
+                for (int j = (node == first) ? 1 : 0; j < node.size; j++) {
+                    int key = node.keys[j];
+                    if (key >= hi) {
+                        return count;
+                    }
+                    if (key >= lo) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Collects the keys in [lo, hi) along the leaves.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int[] rangeScan(int lo, int hi) {
+        lock.lock();
+        try {
+            int[] values = new int[16];
+            int count = 0;
+            Node first = leftmostLeaf();
+            scan:
+            for (Node node = findLeaf(lo); node != null; node = node.next) {
+                for (int j = (node == first) ? 1 : 0; j < node.size; j++) {
+                    int key = node.keys[j];
+                    if (key >= hi) {
+                        break scan;
+                    }
+                    if (key >= lo) {
+                        if (count == values.length) {
+                            values = Arrays.copyOf(values, 2 * count);
+                        }
+                        values[count++] = key;
+                    }
+                }
+            }
+            return Arrays.copyOf(values, count);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Skips whole leaves up to the one holding the key of the given rank.
+     * @param rank
+     * @return
+     */
+    public int select(int rank) {
+        if (rank < 0) {
+            throw new NoSuchElementException("Negative rank: " + rank);
+        }
+        lock.lock();
+        try {
+            // the sentinel has rank -1
+            int remaining = rank + 1;
+            for (Node node = leftmostLeaf(); node != null; node = node.next) {
+                if (remaining < node.size) {
+                    return node.keys[remaining];
+                }
+                remaining -= node.size;
+            }
+            throw new NoSuchElementException("No value of rank " + rank);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Node leftmostLeaf() {
+        Node node = root;
+        for (int i = level; i > 0; i--) {
+            node = node.children[0];
+        }
+        return node;
+    }
+
+    /**
+     * Class Node holding a run of consecutive keys of a level, with the
+     * child node of each key at index levels.
+     */
+    private static final class Node {
+        int[] keys = new int[2 * FANOUT];
+        /** null in leaves */
+        Node[] children;
+        int size = 0;
+        /** The next leaf, null at index levels */
+        Node next;
+
+        Node(boolean index) {
+            if (index) {
+                children = new Node[keys.length];
+            }
+        }
+
+        /**
+         * Returns the position of the largest key lower than or equal to
+         * the value. The first key is never greater than the value.
+         * @param value
+         * @return
+         */
+        int find(int value) {
+            int position = 1;
+            while (position < size && keys[position] <= value) {
+                position++;
+            }
+            return position - 1;
+        }
+
+        void insert(int position, int key, Node child) {
+            if (size == keys.length) {
+                grow(2 * size);
+            }
+            System.arraycopy(keys, position, keys, position + 1, size - position);
+            keys[position] = key;
+            if (children != null) {
+                System.arraycopy(children, position, children, position + 1, size - position);
+                children[position] = child;
+            }
+            size++;
+        }
+
+        void remove(int position) {
+            size--;
+            System.arraycopy(keys, position + 1, keys, position, size - position);
+            if (children != null) {
+                System.arraycopy(children, position + 1, children, position, size - position);
+                children[size] = null;
+            }
+        }
+
+        /**
+         * Moves the keys from the given position to a new node, linked
+         * after this one if it is a leaf.
+         * @param position
+         * @return the new node
+         */
+        Node split(int position) {
+            Node node = new Node(children != null);
+            node.append(this, position);
+            size = position;
+            if (children != null) {
+                Arrays.fill(children, position, children.length, null);
+            } else {
+                node.next = next;
+                next = node;
+            }
+            return node;
+        }
+
+        /**
+         * Appends the keys of the other node from the given position.
+         */
+        void append(Node other, int from) {
+            int count = other.size - from;
+            if (size + count > keys.length) {
+                grow(Math.max(2 * keys.length, size + count));
+            }
+            System.arraycopy(other.keys, from, keys, size, count);
+            if (children != null) {
+                System.arraycopy(other.children, from, children, size, count);
+            }
+            size += count;
+        }
+
+        private void grow(int capacity) {
+            keys = Arrays.copyOf(keys, capacity);
+            if (children != null) {
+                children = Arrays.copyOf(children, capacity);
+            }
+        }
+    }
+}
@@ -14,20 +14,30 @@
 
 package soft3410;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Stack;
 import java.lang.Math;
 
+import contention.abstractions.BulkLoadAlg;
+import contention.abstractions.CompositionalRangeQuery;
+
 /**
  * A sequential skip-list implementation of an int set.
  */
 
 public class SkiplistIntSet
-        extends contention.abstractions.AbstractCompositionalIntSet {
+        extends contention.abstractions.AbstractCompositionalIntSet
+        implements BulkLoadAlg, CompositionalRangeQuery {
 
     /** The maximum number of levels */
     final private int maxIndex;
+    /** The highest level holding a node, where traversals start */
+    private int level;
+    /** The number of elements */
+    private int size = 0;
     /** The first element of the list */
     final public Node head;
     /** The last element of the list */
@@ -62,10 +72,12 @@ public class SkiplistIntSet
 
     /**
      * Random level int generator in range of maximum level.
+     * A new node rises at most one level above the current highest level,
+     * so that the levels grow with the size of the set.
      * @return
      */
     private int randomLevel() {
-        return Math.min((maxIndex - 1), (randomLeveler()));
+        return Math.min(Math.min(maxIndex - 1, level + 1), randomLeveler());
     }
 
     /**
@@ -77,7 +89,7 @@ public class SkiplistIntSet
     public boolean addInt(int value) {
         Node[] update = new Node[maxIndex + 1];
         Node curr = head;
-        for (int i = maxIndex; i >= 0; i--) {
+        for (int i = level; i >= 0; i--) {
             Node next = curr.getNext(i);
             while (next != null && next.getValue() < value) {
                 curr = next;
@@ -89,12 +101,17 @@ public class SkiplistIntSet
         if (curr.getValue() == value) {
             return false;
         } else {
-            int level = randomLevel();
-            curr = new Node(level, value);
-            for (int i = 0; i <= level; i++) {
+            int nodeLevel = randomLevel();
+            if (nodeLevel > level) {
+                update[nodeLevel] = head;
+                level = nodeLevel;
+            }
+            curr = new Node(nodeLevel, value);
+            for (int i = 0; i <= nodeLevel; i++) {
                 curr.setNext(i, update[i].getNext(i));
                 update[i].setNext(i, curr);
             }
+            size++;
             return true;
         }
     }
@@ -108,7 +125,7 @@ public class SkiplistIntSet
     public boolean removeInt(int value) {
         Node[] update = new Node[maxIndex + 1];
         Node curr = head;
-        for (int i = maxIndex; i >= 0; i--) {
+        for (int i = level; i >= 0; i--) {
             Node next = curr.getNext(i);
             while (next.getValue() < value && next != null) {
                 curr = next;
@@ -124,10 +141,98 @@ public class SkiplistIntSet
             for (int i = 0; i <= maxIndex; i++) {
                 update[i].setNext(i, curr.getNext(i));
             }
+            while (level > 0 && head.getNext(level) == tail) {
+                level--;
+            }
+            size--;
             return true;
         }
     }
 
+    /**
+     * Adds the values of a batch in increasing order, each search
+     * starting from the predecessors of the previous value.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean addAll(Collection<Integer> c) {
+        int[] values = sortedKeys(c);
+        Node[] update = new Node[maxIndex + 1];
+        Arrays.fill(update, head);
+        boolean changed = false;
+        for (int value : values) {
+            Node curr = fingerSearch(update, value);
+            if (curr.getValue() != value) {
+                int nodeLevel = randomLevel();
+                if (nodeLevel > level) {
+                    update[nodeLevel] = head;
+                    level = nodeLevel;
+                }
+                curr = new Node(nodeLevel, value);
+                for (int i = 0; i <= nodeLevel; i++) {
+                    curr.setNext(i, update[i].getNext(i));
+                    update[i].setNext(i, curr);
+                }
+                size++;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the values of a batch in increasing order, each search
+     * starting from the predecessors of the previous value.
+     * @param c
+     * @return true if the set changed
+     */
+    public boolean removeAll(Collection<Integer> c) {
+        int[] values = sortedKeys(c);
+        Node[] update = new Node[maxIndex + 1];
+        Arrays.fill(update, head);
+        boolean changed = false;
+        for (int value : values) {
+            Node curr = fingerSearch(update, value);
+            if (curr.getValue() == value) {
+                int maxIndex = curr.getIndex();
+                for (int i = 0; i <= maxIndex; i++) {
+                    update[i].setNext(i, curr.getNext(i));
+                }
+                while (level > 0 && head.getNext(level) == tail) {
+                    level--;
+                }
+                size--;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Finger search: climbs from the predecessors of a lower value as long
+     * as the next node of the level above still precedes the value, then
+     * descends as usual.
+     * @param update the predecessors of a lower value, replaced by those of the value
+     * @param value
+     * @return the first node whose value is not lower than the given one
+     */
+    private Node fingerSearch(Node[] update, int value) {
+        int top = 0;
+        while (top < level && update[top + 1].getNext(top + 1).getValue() < value) {
+            top++;
+        }
+        Node curr = update[top];
+        for (int i = top; i >= 0; i--) {
+            Node next = curr.getNext(i);
+            while (next.getValue() < value) {
+                curr = next;
+                next = curr.getNext(i);
+            }
+            update[i] = curr;
+        }
+        return curr.getNext(0);
+    }
+
     /**
      * Goes through the levels and linked lists to check if the value exists in the skip-list.
      * @param value
@@ -135,7 +240,7 @@ public class SkiplistIntSet
      */
     public boolean containsInt(int value) {
         Node curr = head;
-        for (int i = maxIndex; i >= 0; i--) {
+        for (int i = level; i >= 0; i--) {
             Node next = curr.getNext(i);
             while(next != null && next.getValue() < value) {
                 curr = next;
@@ -147,18 +252,38 @@ public class SkiplistIntSet
     }
 
     /**
-     * Traverses the bottom level of the skiplist, counting all nodes.
      * Returns the number of unique valued nodes in the skip-list.
      * @return
      */
-    public synchronized int size() {
-        int i = 0;
-        Node curr = head.getNext(0).getNext(0);
-        while (curr != null) {
-            curr = curr.getNext(0);
-            i++;
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Replaces the content of the skip-list with sorted values, appending
+     * each node behind the last node of each of its levels, bottom-up in a
+     * single pass.
+     * @param keys the distinct values to be loaded, in ascending order
+     */
+    public void bulkLoad(int[] keys) {
+        Node[] last = new Node[maxIndex + 1];
+        Arrays.fill(last, head);
+        level = 0;
+        for (int key : keys) {
+            int nodeLevel = randomLevel();
+            if (nodeLevel > level) {
+                level = nodeLevel;
+            }
+            Node node = new Node(nodeLevel, key);
+            for (int i = 0; i <= nodeLevel; i++) {
+                last[i].setNext(i, node);
+                last[i] = node;
+            }
         }
-        return i;
+        for (int i = 0; i <= maxIndex; i++) {
+            last[i].setNext(i, tail);
+        }
+        size = keys.length;
     }
 
     /**
@@ -169,6 +294,76 @@ public class SkiplistIntSet
         for (int i = 0; i <= this.maxIndex; i++) {
             this.head.setNext(i, this.tail);
         }
+        this.level = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the first node whose value is not lower than the given one.
+     * @param value
+     * @return
+     */
+    private Node findFirst(int value) {
+        Node curr = head;
+        for (int i = level; i >= 0; i--) {
+            Node next = curr.getNext(i);
+            while (next.getValue() < value) {
+                curr = next;
+                next = curr.getNext(i);
+            }
+        }
+        return curr.getNext(0);
+    }
+
+    /**
+     * Counts the values in [lo, hi) along the bottom level.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int rangeCount(int lo, int hi) {
+        int count = 0;
+        for (Node curr = findFirst(lo); curr.getValue() < hi; curr = curr.getNext(0)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Collects the values in [lo, hi) along the bottom level.
+     * @param lo
+     * @param hi
+     * @return
+     */
+    public int[] rangeScan(int lo, int hi) {
+        int[] values = new int[16];
+        int count = 0;
+        for (Node curr = findFirst(lo); curr.getValue() < hi; curr = curr.getNext(0)) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, 2 * count);
+            }
+            values[count++] = curr.getValue();
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Walks the bottom level up to the value of the given rank.
+     * @param rank
+     * @return
+     */
+    public int select(int rank) {
+        if (rank < 0) {
+            throw new NoSuchElementException("Negative rank: " + rank);
+        }
+        Node curr = head.getNext(0);
+        for (int i = 0; i < rank && curr != tail; i++) {
+            curr = curr.getNext(0);
+        }
+        if (curr == tail) {
+            throw new NoSuchElementException("No value of rank " + rank);
+        }
+        return curr.getValue();
     }
 
     /**
@@ -0,0 +1,224 @@
+/*
+ *  Based on
+ *  E. Petrank, S. Timnat. Lock-free data-structure iterators.
+ *  In DISC, 2013.
+ */
+
+package soft3410;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import contention.abstractions.CompositionalIterator;
+
+/**
+ * The collector of a snapshot shared by the iterators of a set that start
+ * while it is active.
+ *
+ * The iterators traverse the set and add the live nodes they find, while
+ * the updates and lookups report the nodes whose state they change or
+ * observe. Once an iterator deactivates the collector, no report is
+ * accepted anymore and the snapshot is the set of collected or reported
+ * nodes whose latest known state is live.
+ *
+ * A node state is a version: even when the node is live and odd when it
+ * is deleted. Versions only grow, even when a node is revived or recycled
+ * with another key, so that the latest entry of a node tells its state.
+ * They are longs, so that the sets may keep flags in their high bits.
+ */
+final class SnapCollector {
+
+    /** The collector an operation reports to when no iterator is running */
+    static final SnapCollector INACTIVE = new SnapCollector(false);
+
+    private volatile boolean active;
+    private final AtomicReference<Entry> nodes = new AtomicReference<Entry>();
+    private final AtomicReference<Entry> reports = new AtomicReference<Entry>();
+    /** The sorted keys of the snapshot, once computed */
+    private volatile int[] snapshot;
+
+    SnapCollector() {
+        this(true);
+    }
+
+    private SnapCollector(boolean active) {
+        this.active = active;
+    }
+
+    static boolean isLive(long version) {
+        return (version & 1) == 0;
+    }
+
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Returns the active collector of the pointer, or installs a new one.
+     */
+    static SnapCollector acquire(AtomicReference<SnapCollector> pointer) {
+        SnapCollector current = pointer.get();
+        if (current.isActive()) {
+            return current;
+        }
+        SnapCollector collector = new SnapCollector();
+        if (pointer.compareAndSet(current, collector)) {
+            return collector;
+        }
+        return pointer.get();
+    }
+
+    /**
+     * Adds a node found live by a traversal of an iterator.
+     * @return false if the collection is over
+     */
+    boolean addNode(Object node, int key, long version) {
+        return push(nodes, new Entry(node, key, version));
+    }
+
+    /**
+     * Reports the state of a node changed or observed by an operation.
+     */
+    void report(Object node, int key, long version) {
+        push(reports, new Entry(node, key, version));
+    }
+
+    private static boolean push(AtomicReference<Entry> stack, Entry entry) {
+        for (;;) {
+            Entry top = stack.get();
+            if (top != null && top.blocked) {
+                return false;
+            }
+            entry.next = top;
+            if (stack.compareAndSet(top, entry)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return whether this call blocked the stack, rather than an earlier
+     *         one
+     */
+    private static boolean block(AtomicReference<Entry> stack) {
+        for (;;) {
+            Entry top = stack.get();
+            if (top != null && top.blocked) {
+                return false;
+            }
+            Entry blocker = new Entry(null, 0, 0);
+            blocker.blocked = true;
+            blocker.next = top;
+            if (stack.compareAndSet(top, blocker)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ends the collection: no node nor report is accepted afterwards.
+     * @return whether this call ended it, rather than an earlier one, in
+     *         which case the traversal of the caller completed before
+     */
+    boolean deactivate() {
+        boolean first = block(nodes);
+        active = false;
+        block(reports);
+        return first;
+    }
+
+    /**
+     * Returns the sorted keys of the snapshot, computed once by the first
+     * caller after the deactivation.
+     */
+    int[] keys() {
+        int[] keys = snapshot;
+        if (keys == null) {
+            keys = reconstruct();
+            snapshot = keys;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns an iterator over the snapshot.
+     */
+    CompositionalIterator<Integer> iterator() {
+        return new SnapshotIterator(keys());
+    }
+
+    private int[] reconstruct() {
+        IdentityHashMap<Object, Entry> latest = new IdentityHashMap<Object, Entry>();
+        keepLatest(latest, nodes.get());
+        keepLatest(latest, reports.get());
+        int[] keys = new int[latest.size()];
+        int count = 0;
+        for (Entry entry : latest.values()) {
+            if (isLive(entry.version)) {
+                keys[count++] = entry.key;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        // a deleted node whose report came too late may share its key
+        // with the node that replaced it
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || keys[unique - 1] != keys[i]) {
+                keys[unique++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, unique);
+    }
+
+    private static void keepLatest(IdentityHashMap<Object, Entry> latest, Entry entry) {
+        for (; entry != null; entry = entry.next) {
+            if (entry.blocked) {
+                continue;
+            }
+            Entry previous = latest.get(entry.node);
+            if (previous == null || previous.version < entry.version) {
+                latest.put(entry.node, entry);
+            }
+        }
+    }
+
+    private static final class Entry {
+        final Object node;
+        final int key;
+        final long version;
+        boolean blocked = false;
+        Entry next;
+
+        Entry(Object node, int key, long version) {
+            this.node = node;
+            this.key = key;
+            this.version = version;
+        }
+    }
+
+    private static final class SnapshotIterator implements CompositionalIterator<Integer> {
+        private final int[] keys;
+        private int position = 0;
+
+        SnapshotIterator(int[] keys) {
+            this.keys = keys;
+        }
+
+        public boolean hasNext() {
+            return position < keys.length;
+        }
+
+        public Integer next() {
+            if (position == keys.length) {
+                throw new NoSuchElementException();
+            }
+            return keys[position++];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException("Snapshots are read-only");
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package soft3410;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+
+import contention.abstractions.BulkLoadAlg;
+
+/**
+ * A coarse-grained locking linked list implementation of a set, where
+ * lookups first traverse under an optimistic read stamp and only fall back
+ * to a read lock when a writer invalidated the stamp.
+ */
+public class StampedLockLinkedListIntSet
+    extends contention.abstractions.AbstractCompositionalIntSet
+    implements BulkLoadAlg {
+  final private Node head;
+  final private Node tail;
+  final private StampedLock stampedLock;
+
+  public StampedLockLinkedListIntSet() {
+    head = new Node(Integer.MIN_VALUE);
+    tail = new Node(Integer.MAX_VALUE);
+    head.setNext(tail);
+    stampedLock = new StampedLock();
+  }
+
+  /**
+   * Add a new int to the set.
+   *
+   * @param value  The new int to be added
+   * @return false if the int already exists in the set
+   */
+  public boolean addInt(int value) {
+    long stamp = stampedLock.writeLock();
+    try {
+      Node predecessor = findPredecessor(value);
+      Node current = predecessor.getNext();
+
+      if (current.value == value) {
+        return false;
+      }
+      Node node = new Node(value);
+      node.setNext(current);
+      predecessor.setNext(node);
+      return true;
+    } finally {
+      stampedLock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Remove an int from the set.
+   *
+   * @param value  The int to be removed
+   * @return false if the int did not exist in the set
+   */
+  public boolean removeInt(int value) {
+    long stamp = stampedLock.writeLock();
+    try {
+      Node predecessor = findPredecessor(value);
+      Node current = predecessor.getNext();
+
+      if (current.value != value) {
+        return false;
+      }
+      predecessor.setNext(current.getNext());
+      return true;
+    } finally {
+      stampedLock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Add the ints of a collection under a single acquisition of the write lock, in a single
+   * traversal of the list as the batch is sorted first.
+   *
+   * @param c  The ints to be added
+   * @return true if the set changed
+   */
+  public boolean addAll(Collection<Integer> c) {
+    int[] values = sortedKeys(c);
+    boolean changed = false;
+    long stamp = stampedLock.writeLock();
+    try {
+      Node predecessor = head;
+      for (int value : values) {
+        predecessor = findPredecessor(predecessor, value);
+        Node current = predecessor.getNext();
+        if (current.value != value) {
+          predecessor.setNext(new Node(value, current));
+          changed = true;
+        }
+      }
+      return changed;
+    } finally {
+      stampedLock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Remove the ints of a collection under a single acquisition of the write lock, in a single
+   * traversal of the list as the batch is sorted first.
+   *
+   * @param c  The ints to be removed
+   * @return true if the set changed
+   */
+  public boolean removeAll(Collection<Integer> c) {
+    int[] values = sortedKeys(c);
+    boolean changed = false;
+    long stamp = stampedLock.writeLock();
+    try {
+      Node predecessor = head;
+      for (int value : values) {
+        predecessor = findPredecessor(predecessor, value);
+        Node current = predecessor.getNext();
+        if (current.value == value) {
+          predecessor.setNext(current.getNext());
+          changed = true;
+        }
+      }
+      return changed;
+    } finally {
+      stampedLock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Check if an int is a member of the set.
+   * The list is first traversed without taking the lock; the result is only
+   * trusted if no writer acquired the lock in the meantime.
+   *
+   * @param value  The int to be checked
+   * @return true if value exists in the set
+   */
+  public boolean containsInt(int value) {
+    long stamp = stampedLock.tryOptimisticRead();
+    if (stamp != 0L) {
+      Node current = head;
+      Node next = current.getNext();
+      // A concurrent writer may expose a partially linked node, so stop at
+      // any missing link and let validate() reject the traversal.
+      while (next != null && next.value < value) {
+        current = next;
+        next = current.getNext();
+      }
+      boolean found = (next != null && next.value == value);
+      if (stampedLock.validate(stamp)) {
+        return found;
+      }
+    }
+    stamp = stampedLock.readLock();
+    try {
+      Node current = findPredecessor(value).getNext();
+      return (current.value == value);
+    } finally {
+      stampedLock.unlockRead(stamp);
+    }
+  }
+
+  public int size() {
+    long stamp = stampedLock.readLock();
+    try {
+      int size = 0;
+      Node current = head.getNext();
+      while (current.getNext() != null) {
+        current = current.getNext();
+        size++;
+      }
+      return size;
+    } finally {
+      stampedLock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Find and return the predecessor to the node that would contain the given value.
+   * The caller must hold either the read or the write lock.
+   * @param value The value to search for.
+   * @return the Node containing the largest value smaller than the search value
+   */
+  private Node findPredecessor(int value) {
+    return findPredecessor(head, value);
+  }
+
+  /**
+   * Find the predecessor to the node that would contain the given value,
+   * starting from a node known to contain a smaller value.
+   */
+  private Node findPredecessor(Node current, int value) {
+    while (true) {
+      // Found a match in the next node, so return its predecessor
+      if (current.getNext().value >= value) {
+        return current;
+      }
+      current = current.getNext();
+    }
+  }
+
+  /**
+   * Replace the content of the set with sorted ints, linked from the last
+   * one backwards in a single pass.
+   *
+   * @param keys  The distinct ints to be loaded, in ascending order
+   */
+  public void bulkLoad(int[] keys) {
+    long stamp = stampedLock.writeLock();
+    try {
+      Node next = tail;
+      for (int i = keys.length - 1; i >= 0; i--) {
+        next = new Node(keys[i], next);
+      }
+      head.setNext(next);
+    } finally {
+      stampedLock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Empty the set.
+   */
+  public void clear() {
+    long stamp = stampedLock.writeLock();
+    head.setNext(tail);
+    stampedLock.unlockWrite(stamp);
+  }
+
+  class Node {
+
+    final int value;
+    private Node next;
+
+    Node(int value, Node next) {
+      this.value = value;
+      this.next = next;
+    }
+
+    Node(int value) {
+      this(value, null);
+    }
+
+    void setNext(Node next) {
+      this.next = next;
+    }
+
+    Node getNext() {
+      return next;
+    }
+  }
+
+}